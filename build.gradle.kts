@@ -12,12 +12,32 @@ repositories {
     maven("https://jitpack.io")
 }
 
+// JMH benchmarks and the discovery simulation live in src/jmh/java and see the plugin's package-private classes
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
+configurations.named("jmhImplementation") {
+    extendsFrom(configurations.implementation.get())
+}
+
 dependencies {
     compileOnly("com.velocitypowered:velocity-api:3.3.0-SNAPSHOT")
     annotationProcessor("com.velocitypowered:velocity-api:3.3.0-SNAPSHOT")
     implementation("com.google.code.gson:gson:2.10.1")
     implementation("com.github.docker-java:docker-java-core:3.3.4")
     implementation("com.github.docker-java:docker-java-transport-httpclient5:3.3.4")
+    
+    testImplementation("com.velocitypowered:velocity-api:3.3.0-SNAPSHOT")
+    testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    
+    "jmhImplementation"("com.velocitypowered:velocity-api:3.3.0-SNAPSHOT")
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 group = "net.plexverse.velocityautoregister"
@@ -53,5 +73,36 @@ tasks {
     jar {
         duplicatesStrategy = DuplicatesStrategy.EXCLUDE
     }
+    
+    test {
+        useJUnitPlatform()
+    }
+    
+    // ./gradlew jmh [-Pjmh.includes=<regex>]; works with --offline once dependencies are cached
+    register<JavaExec>("jmh") {
+        group = "benchmark"
+        description = "Runs the JMH benchmarks with the GC profiler for allocation rates"
+        dependsOn("jmhClasses")
+        classpath = sourceSets["jmh"].runtimeClasspath
+        mainClass.set("org.openjdk.jmh.Main")
+        javaLauncher.set(project.javaToolchains.launcherFor(project.java.toolchain))
+        
+        val results = layout.buildDirectory.file("reports/jmh/results.json")
+        val includes = project.findProperty("jmh.includes")?.toString()
+        args(listOfNotNull(includes) + listOf("-prof", "gc", "-rf", "json", "-rff", results.get().asFile.path))
+        doFirst {
+            results.get().asFile.parentFile.mkdirs()
+        }
+    }
+    
+    // ./gradlew simulate [-Psim.args="mode=swarm services=100 replicas=50 churn=25"]
+    register<JavaExec>("simulate") {
+        group = "benchmark"
+        description = "Runs discovery end to end against simulated Docker daemons and reports latency, API calls and heap"
+        dependsOn("jmhClasses")
+        classpath = sourceSets["jmh"].runtimeClasspath
+        mainClass.set("net.plexverse.velocityautoregister.DiscoverySimulation")
+        javaLauncher.set(project.javaToolchains.launcherFor(project.java.toolchain))
+        args((project.findProperty("sim.args")?.toString() ?: "").split(" ").filter { it.isNotBlank() })
+    }
 }
-
@@ -0,0 +1,333 @@
+package net.plexverse.velocityautoregister;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
+import net.plexverse.velocityautoregister.api.DiscoveredServer;
+import net.plexverse.velocityautoregister.api.RegistryChange;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Starts the real plugin against one or more {@link DockerApiSimulator} daemons and a
+ * {@link FakeProxyServer}, waits for the initial fleet to be registered, then applies churn
+ * and health flapping for a while. Reports how long the registry took to reflect each change
+ * (measured through the public {@code ServerDirectory} listener), Docker API calls and heap.
+ *
+ * <p>Arguments are {@code key=value} pairs, see {@link Options}. For example
+ * {@code mode=swarm services=100 replicas=50 churn=25 flap=5 latency=20 duration=120}.
+ */
+final class DiscoverySimulation {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    /** Simulation parameters with their defaults. */
+    static final class Options {
+        SimulatedFleet.Mode mode = SimulatedFleet.Mode.COMPOSE;
+        /** {@code events} or {@code polling}, as in the plugin config. */
+        String discovery = "events";
+        int endpoints = 1;
+        int services = 20;
+        int replicas = 50;
+        /** Replicas replaced per second, per endpoint. */
+        double churn = 10;
+        /** Health flips per second, per endpoint. */
+        double flap = 2;
+        long latency = 5;
+        long jitter = 5;
+        long duration = 60;
+        long seed = 42;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                if (eq <= 0) {
+                    throw new IllegalArgumentException("Expected key=value, got " + arg);
+                }
+                String value = arg.substring(eq + 1);
+                switch (arg.substring(0, eq)) {
+                    case "mode" -> options.mode = SimulatedFleet.Mode.valueOf(value.toUpperCase(Locale.ROOT));
+                    case "discovery" -> options.discovery = value;
+                    case "endpoints" -> options.endpoints = Math.max(1, Integer.parseInt(value));
+                    case "services" -> options.services = Math.max(1, Integer.parseInt(value));
+                    case "replicas" -> options.replicas = Math.max(1, Integer.parseInt(value));
+                    case "churn" -> options.churn = Double.parseDouble(value);
+                    case "flap" -> options.flap = Double.parseDouble(value);
+                    case "latency" -> options.latency = Long.parseLong(value);
+                    case "jitter" -> options.jitter = Long.parseLong(value);
+                    case "duration" -> options.duration = Long.parseLong(value);
+                    case "seed" -> options.seed = Long.parseLong(value);
+                    default -> throw new IllegalArgumentException("Unknown option " + arg.substring(0, eq));
+                }
+            }
+            return options;
+        }
+
+        @Override
+        public String toString() {
+            return "mode=" + mode.name().toLowerCase(Locale.ROOT) + " discovery=" + discovery + " endpoints=" + endpoints
+                + " services=" + services + " replicas=" + replicas + " churn=" + churn + "/s flap=" + flap
+                + "/s latency=" + latency + "+" + jitter + "ms duration=" + duration + "s";
+        }
+    }
+
+    private DiscoverySimulation() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        System.out.println("Simulating " + options);
+
+        List<SimulatedFleet> fleets = new ArrayList<>();
+        List<DockerApiSimulator> daemons = new ArrayList<>();
+        Path dataDirectory = Files.createTempDirectory("velocity-auto-register-sim");
+        try {
+            for (int i = 0; i < options.endpoints; i++) {
+                String idPrefix = options.endpoints > 1 ? "sim" + (i + 1) + "/" : "";
+                SimulatedFleet fleet = new SimulatedFleet(options.mode, options.services, options.replicas,
+                    idPrefix, i, options.seed + i);
+                DockerApiSimulator daemon = new DockerApiSimulator(fleet, options.latency, options.jitter);
+                daemon.start();
+                fleets.add(fleet);
+                daemons.add(daemon);
+            }
+            writeConfig(dataDirectory, options, daemons);
+            run(options, fleets, daemons, dataDirectory);
+        } finally {
+            daemons.forEach(DockerApiSimulator::close);
+            deleteRecursively(dataDirectory);
+        }
+    }
+
+    private static void run(Options options, List<SimulatedFleet> fleets, List<DockerApiSimulator> daemons,
+                            Path dataDirectory) throws Exception {
+        LatencyHistogram registrations = new LatencyHistogram(LatencyHistogram.MILLISECOND_BOUNDS);
+        LatencyHistogram removals = new LatencyHistogram(LatencyHistogram.MILLISECOND_BOUNDS);
+
+        long heapBefore = usedHeapAfterGc();
+        VelocityAutoRegister plugin = new VelocityAutoRegister(FakeProxyServer.create(),
+            LoggerFactory.getLogger("velocity-auto-register"), dataDirectory);
+        plugin.getServerDirectory().addListener(change -> record(change, fleets, registrations, removals));
+
+        // Cold start: from plugin start until every replica is registered
+        long start = System.nanoTime();
+        plugin.onProxyInitialization(new ProxyInitializeEvent());
+        boolean synced = await(() -> consistent(plugin, fleets), TimeUnit.MINUTES.toMillis(5));
+        long coldStartMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (!synced) {
+            System.out.println("Initial discovery did not register the fleet within 5 minutes, stopping");
+            plugin.onProxyShutdown(new ProxyShutdownEvent());
+            return;
+        }
+        long heapSynced = usedHeapAfterGc();
+        Map<String, Long> callsAtSync = totalCalls(daemons);
+
+        // Steady state: churn and flapping at the requested rates, applied every 100 ms
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        long churnStart = System.nanoTime();
+        long end = churnStart + TimeUnit.SECONDS.toNanos(options.duration);
+        double churnDue = 0;
+        double flapDue = 0;
+        while (System.nanoTime() < end) {
+            churnDue += options.churn / 10;
+            flapDue += options.flap / 10;
+            for (SimulatedFleet fleet : fleets) {
+                fleet.tick();
+                fleet.churn((int) churnDue);
+                fleet.flap((int) flapDue);
+            }
+            churnDue -= (int) churnDue;
+            flapDue -= (int) flapDue;
+            Thread.sleep(100);
+        }
+        for (SimulatedFleet fleet : fleets) {
+            fleet.tick();
+        }
+        long churnMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - churnStart);
+
+        // Settle: the last changes may still be in flight
+        long settleStart = System.nanoTime();
+        boolean settled = await(() -> consistent(plugin, fleets), TimeUnit.MINUTES.toMillis(2));
+        long settleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - settleStart);
+        long heapEnd = usedHeapAfterGc();
+        Map<String, Long> callsAtEnd = totalCalls(daemons);
+        Map<String, Long> bytesAtEnd = totalBytes(daemons);
+
+        plugin.onProxyShutdown(new ProxyShutdownEvent());
+
+        int expected = fleets.stream().mapToInt(fleet -> fleet.expectedBackendIds().size()).sum();
+        int unmeasured = fleets.stream().mapToInt(fleet -> fleet.pendingRegistrations.size() + fleet.pendingRemovals.size()).sum();
+        int coalesced = fleets.stream().mapToInt(fleet -> fleet.coalesced).sum();
+
+        System.out.println();
+        System.out.printf("Cold start:        %d ms to register %d server(s)%n", coldStartMillis,
+            options.endpoints * options.services * options.replicas);
+        System.out.printf("Steady state:      %d s of churn, %s after it (%d ms), %d server(s) registered%n",
+            churnMillis / 1000, settled ? "consistent" : "NOT consistent", settleMillis, expected);
+        printLatency("Registration", registrations);
+        printLatency("Removal", removals);
+        System.out.printf("Not measured:      %d change(s) undone before discovery saw them, %d never observed%n",
+            coalesced, unmeasured);
+        System.out.println("Docker API calls (cold start / steady state / bytes total):");
+        for (Map.Entry<String, Long> entry : callsAtEnd.entrySet()) {
+            long atSync = callsAtSync.getOrDefault(entry.getKey(), 0L);
+            System.out.printf("  %-18s %6d / %6d (%.1f/s) / %s%n", entry.getKey(), atSync, entry.getValue() - atSync,
+                (entry.getValue() - atSync) * 1000.0 / Math.max(1, churnMillis),
+                humanBytes(bytesAtEnd.getOrDefault(entry.getKey(), 0L)));
+        }
+        System.out.printf("Heap used after GC: %s before start, %s after cold start, %s at the end%n",
+            humanBytes(heapBefore), humanBytes(heapSynced), humanBytes(heapEnd));
+        System.out.printf("GC during steady state: %d collection(s), %d ms%n",
+            gcCount() - gcCountBefore, gcMillis() - gcMillisBefore);
+    }
+
+    /**
+     * Matches a published change against the fleet changes waiting for it. A server taken out
+     * of rotation for a failed health check counts as removed even though it stays registered.
+     */
+    private static void record(RegistryChange change, List<SimulatedFleet> fleets,
+                               LatencyHistogram registrations, LatencyHistogram removals) {
+        long now = System.nanoTime();
+        List<DiscoveredServer> registered = new ArrayList<>(change.added());
+        registered.addAll(change.updated());
+        for (DiscoveredServer server : registered) {
+            RegistryEntry entry = (RegistryEntry) server;
+            resolve(fleets, entry.healthy(), entry.backendId(), now, registrations, removals);
+        }
+        for (DiscoveredServer server : change.removed()) {
+            resolve(fleets, false, ((RegistryEntry) server).backendId(), now, registrations, removals);
+        }
+    }
+
+    private static void resolve(List<SimulatedFleet> fleets, boolean inRotation, String id, long now,
+                                LatencyHistogram registrations, LatencyHistogram removals) {
+        for (SimulatedFleet fleet : fleets) {
+            Long since = (inRotation ? fleet.pendingRegistrations : fleet.pendingRemovals).remove(id);
+            if (since != null) {
+                (inRotation ? registrations : removals).record(now - since);
+            }
+        }
+    }
+
+    /** Whether the servers in rotation are exactly the backends the fleets expect. */
+    private static boolean consistent(VelocityAutoRegister plugin, List<SimulatedFleet> fleets) {
+        Set<String> expected = new HashSet<>();
+        for (SimulatedFleet fleet : fleets) {
+            expected.addAll(fleet.expectedBackendIds());
+        }
+        Set<String> registered = new HashSet<>();
+        for (DiscoveredServer server : plugin.getServerDirectory().all()) {
+            if (server.isRoutable()) {
+                registered.add(((RegistryEntry) server).backendId());
+            }
+        }
+        return registered.equals(expected);
+    }
+
+    private static boolean await(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static void writeConfig(Path dataDirectory, Options options, List<DockerApiSimulator> daemons) throws IOException {
+        List<Map<String, String>> endpoints = new ArrayList<>();
+        for (int i = 0; i < daemons.size(); i++) {
+            endpoints.add(Map.of("name", "sim" + (i + 1), "host", daemons.get(i).dockerHost()));
+        }
+        Map<String, Object> discovery = new LinkedHashMap<>();
+        discovery.put("endpoints", endpoints);
+        discovery.put("mode", options.discovery);
+        discovery.put("network", "sim");
+        discovery.put("stackPrefixes", List.of("sim"));
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("discovery", discovery);
+        // Backends are not real servers, so they cannot be pinged
+        config.put("health", Map.of("enabled", false));
+        config.put("persistence", Map.of("enabled", false));
+        config.put("metrics", Map.of("httpEnabled", false));
+        Files.writeString(dataDirectory.resolve("config.json"), GSON.toJson(config), StandardCharsets.UTF_8);
+    }
+
+    private static void printLatency(String label, LatencyHistogram histogram) {
+        if (histogram.count() == 0) {
+            System.out.printf("%-18s no changes measured%n", label + ":");
+            return;
+        }
+        System.out.printf("%-18s %d change(s), p50 %s, p90 %s, p99 %s, mean %.1f ms%n", label + ":",
+            histogram.count(), millis(histogram.quantileNanos(0.5)), millis(histogram.quantileNanos(0.9)),
+            millis(histogram.quantileNanos(0.99)), histogram.sumNanos() / 1e6 / histogram.count());
+    }
+
+    private static String millis(long nanos) {
+        // Histogram buckets only give an upper bound
+        return nanos == Long.MAX_VALUE ? "> 10000 ms" : "<= " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms";
+    }
+
+    private static Map<String, Long> totalCalls(List<DockerApiSimulator> daemons) {
+        Map<String, Long> total = new TreeMap<>();
+        daemons.forEach(daemon -> daemon.calls().forEach((path, count) -> total.merge(path, count, Long::sum)));
+        return total;
+    }
+
+    private static Map<String, Long> totalBytes(List<DockerApiSimulator> daemons) {
+        Map<String, Long> total = new TreeMap<>();
+        daemons.forEach(daemon -> daemon.bytes().forEach((path, count) -> total.merge(path, count, Long::sum)));
+        return total;
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        System.gc();
+        Thread.sleep(100);
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private static String humanBytes(long bytes) {
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f KiB", bytes / 1024.0);
+        }
+        return String.format(Locale.ROOT, "%.1f MiB", bytes / (1024.0 * 1024));
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (var paths = Files.walk(directory)) {
+            for (Path path : paths.sorted((a, b) -> b.compareTo(a)).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package net.plexverse.velocityautoregister;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves the part of the Docker Engine API discovery uses ({@code /services}, {@code /tasks},
+ * {@code /containers/json}, {@code /events}, plus {@code /_ping} and {@code /version}) from a
+ * {@link SimulatedFleet} on a localhost port. {@code /tasks} honours the {@code desired-state}
+ * and {@code id} filters; other filters are ignored, since every fleet replica is a game server.
+ * Each list call can be delayed to model a slow daemon.
+ */
+final class DockerApiSimulator implements Closeable {
+
+    private static final String END_OF_STREAM = "";
+    private static final Gson GSON = new Gson();
+    private static final Type FILTERS_TYPE = new TypeToken<Map<String, List<String>>>() { }.getType();
+
+    private final SimulatedFleet fleet;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final HttpServer http;
+    private final ExecutorService executor;
+    private final List<BlockingQueue<String>> subscribers = new CopyOnWriteArrayList<>();
+    private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> bytes = new ConcurrentHashMap<>();
+
+    DockerApiSimulator(SimulatedFleet fleet, long latencyMillis, long jitterMillis) throws IOException {
+        this.fleet = fleet;
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        // Event streams hold a thread each for as long as they are open
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "docker-simulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        http.setExecutor(executor);
+        http.createContext("/", this::handle);
+        fleet.onEvent(this::broadcast);
+    }
+
+    void start() {
+        http.start();
+    }
+
+    /** Docker host URI for the plugin config. */
+    String dockerHost() {
+        return "tcp://127.0.0.1:" + http.getAddress().getPort();
+    }
+
+    /** Requests served so far, by path. */
+    Map<String, Long> calls() {
+        Map<String, Long> result = new TreeMap<>();
+        calls.forEach((path, count) -> result.put(path, count.sum()));
+        return result;
+    }
+
+    /** Response bytes sent so far, by path. */
+    Map<String, Long> bytes() {
+        Map<String, Long> result = new TreeMap<>();
+        bytes.forEach((path, count) -> result.put(path, count.sum()));
+        return result;
+    }
+
+    @Override
+    public void close() {
+        for (BlockingQueue<String> subscriber : subscribers) {
+            subscriber.offer(END_OF_STREAM);
+        }
+        http.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        // docker-java may put the API version in front, e.g. /v1.41/events
+        if (path.matches("/v[0-9.]+/.*")) {
+            path = path.substring(path.indexOf('/', 1));
+        }
+        calls.computeIfAbsent(path, k -> new LongAdder()).increment();
+
+        try {
+            switch (path) {
+                case "/_ping" -> respond(exchange, path, 200, "text/plain", "OK");
+                case "/version" -> respond(exchange, path, 200, "application/json", "{\"ApiVersion\":\"1.43\",\"Version\":\"24.0.7\"}");
+                case "/services" -> listServices(exchange, path);
+                case "/tasks" -> listTasks(exchange, path);
+                case "/containers/json" -> {
+                    delay();
+                    respond(exchange, path, 200, "application/json",
+                        fleet.mode() == SimulatedFleet.Mode.COMPOSE ? fleet.renderContainers() : "[]");
+                }
+                case "/events" -> streamEvents(exchange);
+                default -> respond(exchange, path, 404, "application/json", "{\"message\":\"page not found\"}");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void listServices(HttpExchange exchange, String path) throws IOException, InterruptedException {
+        delay();
+        if (notSwarmManager(exchange, path)) {
+            return;
+        }
+        respond(exchange, path, 200, "application/json", fleet.renderServices());
+    }
+
+    private void listTasks(HttpExchange exchange, String path) throws IOException, InterruptedException {
+        delay();
+        if (notSwarmManager(exchange, path)) {
+            return;
+        }
+        Map<String, List<String>> filters = filters(exchange);
+        respond(exchange, path, 200, "application/json", fleet.renderTasks(
+            filters.containsKey("desired-state") ? Set.copyOf(filters.get("desired-state")) : null,
+            filters.containsKey("id") ? Set.copyOf(filters.get("id")) : null));
+    }
+
+    private boolean notSwarmManager(HttpExchange exchange, String path) throws IOException {
+        if (fleet.mode() == SimulatedFleet.Mode.SWARM) {
+            return false;
+        }
+        respond(exchange, path, 503, "application/json",
+            "{\"message\":\"This node is not a swarm manager. Use \\\"docker swarm init\\\" to initialize one.\"}");
+        return true;
+    }
+
+    /** The {@code filters} query parameter: filter name to accepted values. */
+    private static Map<String, List<String>> filters(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("filters=")) {
+                    String json = URLDecoder.decode(parameter.substring("filters=".length()), StandardCharsets.UTF_8);
+                    return GSON.fromJson(json, FILTERS_TYPE);
+                }
+            }
+        }
+        return Map.of();
+    }
+
+    private void streamEvents(HttpExchange exchange) throws IOException, InterruptedException {
+        BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+        subscribers.add(queue);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            out.flush();
+            while (true) {
+                String event = queue.take();
+                if (event == END_OF_STREAM) {
+                    return;
+                }
+                byte[] body = (event + "\n").getBytes(StandardCharsets.UTF_8);
+                out.write(body);
+                out.flush();
+                bytes.computeIfAbsent("/events", k -> new LongAdder()).add(body.length);
+            }
+        } finally {
+            subscribers.remove(queue);
+        }
+    }
+
+    private void broadcast(String event) {
+        for (BlockingQueue<String> subscriber : subscribers) {
+            subscriber.offer(event);
+        }
+    }
+
+    private void delay() throws InterruptedException {
+        long millis = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    private void respond(HttpExchange exchange, String path, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        this.bytes.computeIfAbsent(path, k -> new LongAdder()).add(bytes.length);
+    }
+}
@@ -0,0 +1,95 @@
+package net.plexverse.velocityautoregister;
+
+import com.velocitypowered.api.command.CommandManager;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Just enough of {@link ProxyServer} for the registry code: a name-to-server map. Unlike
+ * Velocity it lets a name be registered again, so one benchmark state can be reused for
+ * every invocation. Commands can be registered but go nowhere, so the whole plugin can start.
+ */
+final class FakeProxyServer {
+
+    private FakeProxyServer() {
+    }
+
+    static ProxyServer create() {
+        Map<String, RegisteredServer> servers = new ConcurrentHashMap<>();
+        return (ProxyServer) Proxy.newProxyInstance(ProxyServer.class.getClassLoader(), new Class<?>[]{ProxyServer.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "registerServer" -> {
+                    RegisteredServer registered = server((ServerInfo) args[0]);
+                    servers.put(((ServerInfo) args[0]).getName(), registered);
+                    yield registered;
+                }
+                case "unregisterServer" -> {
+                    servers.remove(((ServerInfo) args[0]).getName());
+                    yield null;
+                }
+                case "getServer" -> Optional.ofNullable(servers.get((String) args[0]));
+                case "getAllServers" -> List.copyOf(servers.values());
+                case "getCommandManager" -> noOp(CommandManager.class);
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                case "toString" -> "FakeProxyServer";
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+    }
+
+    static RegisteredServer server(ServerInfo info) {
+        return (RegisteredServer) Proxy.newProxyInstance(RegisteredServer.class.getClassLoader(), new Class<?>[]{RegisteredServer.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "getServerInfo" -> info;
+                case "hashCode" -> info.hashCode();
+                case "equals" -> proxy == args[0];
+                case "toString" -> "RegisteredServer[" + info.getName() + "]";
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+    }
+
+    /** A player that only has an ID and a name, enough for the join path to count them. */
+    static Player player(UUID id) {
+        String username = "player-" + id.toString().substring(0, 8);
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "getUniqueId" -> id;
+                case "getUsername" -> username;
+                case "hashCode" -> id.hashCode();
+                case "equals" -> proxy == args[0];
+                case "toString" -> "Player[" + username + "]";
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+    }
+
+    /**
+     * An implementation of {@code type} that does nothing. Methods returning an interface return
+     * another no-op, so builder chains work; the rest return {@code null}, zero or {@code false}.
+     */
+    static <T> T noOp(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                case "toString" -> "NoOp[" + type.getSimpleName() + "]";
+                default -> {
+                    Class<?> returnType = method.getReturnType();
+                    if (returnType.isInterface()) {
+                        yield noOp(returnType);
+                    }
+                    yield returnType.isPrimitive() && returnType != void.class
+                        ? Array.get(Array.newInstance(returnType, 1), 0) : null;
+                }
+            }));
+    }
+}
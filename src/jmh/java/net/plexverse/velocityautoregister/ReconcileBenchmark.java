@@ -0,0 +1,90 @@
+package net.plexverse.velocityautoregister;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.helpers.NOPLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One discovery cycle after the Docker calls: diffing the discovered backends against the
+ * previous snapshot and publishing the next one. Backends are spread over services of 10
+ * replicas, with a lobby service every 20 services.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReconcileBenchmark {
+
+    private static final int REPLICAS_PER_SERVICE = 10;
+
+    @Param({"100", "1000", "20000"})
+    public int backends;
+
+    private RegistryReconciler reconciler;
+    private RegistrySnapshot previous;
+    private List<DiscoveredBackend> unchanged;
+    private List<DiscoveredBackend> rollingUpdate;
+    private Map<String, RegistryEntry> entries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ProxyServer proxy = FakeProxyServer.create();
+        reconciler = new RegistryReconciler(proxy, NOPLogger.NOP_LOGGER, new PluginMetrics(), 300_000);
+        unchanged = discovered(backends, 0);
+        // Every tenth replica replaced by a new task, as in a rolling update
+        rollingUpdate = discovered(backends, 10);
+        entries = reconciler.reconcile(RegistrySnapshot.EMPTY, unchanged);
+        previous = new RegistrySnapshot(1, entries);
+    }
+
+    /** Fallback reconcile with nothing to do; the common case. */
+    @Benchmark
+    public Map<String, RegistryEntry> reconcileUnchanged() {
+        return reconciler.reconcile(previous, unchanged);
+    }
+
+    /** Reconcile with 10% of replicas on new tasks, each re-registered. */
+    @Benchmark
+    public Map<String, RegistryEntry> reconcileRollingUpdate() {
+        return reconciler.reconcile(previous, rollingUpdate);
+    }
+
+    /** Building the snapshot the join path reads: sorting and precomputing the lobby array. */
+    @Benchmark
+    public RegistrySnapshot publishSnapshot() {
+        return new RegistrySnapshot(2, entries);
+    }
+
+    private static List<DiscoveredBackend> discovered(int count, int replaceEvery) {
+        List<DiscoveredBackend> backends = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int service = i / REPLICAS_PER_SERVICE;
+            int replica = i % REPLICAS_PER_SERVICE + 1;
+            String serviceName = service % 20 == 0 ? "lobby" + service : "game" + service;
+            boolean replaced = replaceEvery > 0 && i % replaceEvery == 0;
+            String id = (replaced ? "replaced" : "task") + i;
+            String host = "10." + (i >> 16 & 0xff) + "." + (i >> 8 & 0xff) + "." + (i & 0xff);
+            backends.add(new DiscoveredBackend(id, serviceName + "-" + replica, serviceName, replica, host, 25565,
+                "project" + service, 100, Map.of(), true, false));
+        }
+        return backends;
+    }
+}
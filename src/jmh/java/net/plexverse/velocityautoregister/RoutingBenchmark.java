@@ -0,0 +1,95 @@
+package net.plexverse.velocityautoregister;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The join-path decision made in {@code onPlayerChooseInitialServer}, through the plugin's own
+ * {@link VelocityAutoRegister#routeInitialServer}: read the current snapshot, pick a lobby,
+ * record metrics and count the player in {@link PlayerLoadTracker}. Runs on several threads at
+ * once, as Velocity fires the event from its event loops concurrently.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class RoutingBenchmark {
+
+    /** Distinct players each benchmark thread joins with in turn. */
+    private static final int PLAYERS_PER_THREAD = 1024;
+
+    // A name rather than the enum, since JMH's generated code cannot see package-private types
+    @Param({"LEAST_PLAYERS", "POWER_OF_TWO", "WEIGHTED", "RANDOM"})
+    public String strategyName;
+
+    @Param({"10", "100", "1000"})
+    public int lobbies;
+
+    private final ServerRegistry registry = new ServerRegistry();
+    private final PlayerLoadTracker loadTracker = new PlayerLoadTracker(registry);
+    private final PluginMetrics metrics = new PluginMetrics();
+    private BalancingStrategy strategy;
+
+    /** One thread's joining players, cycled through so every join is a new entry in the tracker. */
+    @State(Scope.Thread)
+    public static class Players {
+        private final Player[] players = new Player[PLAYERS_PER_THREAD];
+        private int next;
+
+        @Setup
+        public void setUp() {
+            for (int i = 0; i < players.length; i++) {
+                players[i] = FakeProxyServer.player(UUID.randomUUID());
+            }
+        }
+
+        Player next() {
+            Player player = players[next];
+            next = (next + 1) % players.length;
+            return player;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        strategy = BalancingStrategy.valueOf(strategyName);
+        Map<String, RegistryEntry> entries = new HashMap<>();
+        for (int i = 1; i <= lobbies; i++) {
+            String name = "lobby-" + i;
+            InetSocketAddress address = InetSocketAddress.createUnresolved("lobby", 25565);
+            entries.put(name, new RegistryEntry(name, "task" + i, address, "lobby", "lobby", i, 50 + i % 3 * 50,
+                Map.of(), true, FakeProxyServer.server(new ServerInfo(name, address)), new BackendState()));
+        }
+        registry.publish(entries);
+    }
+
+    @Benchmark
+    public RegistryEntry chooseInitialServer(Players players) {
+        Player player = players.next();
+        RegistryEntry target = VelocityAutoRegister.routeInitialServer(registry, strategy, loadTracker, metrics, player);
+        // Leave again so the player counts stay level and the next join of this player is a fresh entry
+        loadTracker.disconnected(player);
+        return target;
+    }
+}
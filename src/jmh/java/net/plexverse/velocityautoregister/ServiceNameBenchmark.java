@@ -0,0 +1,55 @@
+package net.plexverse.velocityautoregister;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a compose container name into its service name, once per container per cycle:
+ * parsing a name never seen before, and the cached lookup every later cycle takes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceNameBenchmark {
+
+    @Param({
+        "local-docker_micro-battles_1",
+        "local-docker-micro-battles-12",
+        "plexverse_lobby",
+        "lobby"
+    })
+    public String containerName;
+
+    private ContainerNameParser parser;
+
+    @Setup
+    public void setUp() {
+        PluginConfig.Discovery discovery = new PluginConfig.Discovery();
+        parser = new ContainerNameParser(discovery.getStackPrefixes(), discovery.isStripReplicaSuffix());
+        parser.serviceName("container", containerName);
+    }
+
+    @Benchmark
+    public String parse() {
+        return parser.parse(containerName);
+    }
+
+    @Benchmark
+    public String cachedLookup() {
+        return parser.serviceName("container", containerName);
+    }
+}
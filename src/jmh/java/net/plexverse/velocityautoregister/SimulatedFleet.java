@@ -0,0 +1,335 @@
+package net.plexverse.velocityautoregister;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * A scriptable fleet of game server replicas on one simulated Docker daemon, rendered the way
+ * the Engine API reports Swarm services and tasks or compose containers. Changes are published
+ * as the Docker events a real daemon would send: every compose container change, but in Swarm
+ * only service spec changes, so task health and task stops must be found by a rescan. The time
+ * of each change discovery should act on is recorded so {@link DiscoverySimulation} can measure
+ * how long the plugin took to reflect it.
+ */
+final class SimulatedFleet {
+
+    enum Mode { SWARM, COMPOSE }
+
+    private static final int TASK_HISTORY_PER_SLOT = 5;
+
+    private static final class Replica {
+        final String id;
+        final int service;
+        final int number;
+        final String ip;
+        /** Swarm: the task reports an error. Compose: the health check fails. */
+        boolean unhealthy;
+        /** Swarm only: desired state is {@code shutdown}; the task stops on the next tick. */
+        boolean shuttingDown;
+        /** Swarm only: the task has stopped and is only kept as task history. */
+        boolean stopped;
+
+        Replica(String id, int service, int number, String ip) {
+            this.id = id;
+            this.service = service;
+            this.number = number;
+            this.ip = ip;
+        }
+    }
+
+    private final Mode mode;
+    private final int services;
+    private final String idPrefix;
+    private final int ipBase;
+    private final Random random;
+    private final List<Replica> replicas = new ArrayList<>();
+    /** Swarm only: stopped tasks, oldest first, as Swarm keeps them for {@code docker service ps}. */
+    private final List<Replica> history = new ArrayList<>();
+    private Consumer<String> eventSink = event -> { };
+    private int nextIp = 1;
+
+    /** Backend ID to the time a change made it due for registration. */
+    final Map<String, Long> pendingRegistrations = new ConcurrentHashMap<>();
+    /** Backend ID to the time a change made it due for removal. */
+    final Map<String, Long> pendingRemovals = new ConcurrentHashMap<>();
+    /** Changes undone before discovery could see them, so they are never measured. */
+    int coalesced;
+
+    /**
+     * @param idPrefix prefix the plugin puts on backend IDs from this daemon ({@code <endpoint>/}
+     *                 when several endpoints are configured), so IDs match the registry's
+     * @param ipBase   second octet of the replica IPs, so daemons do not hand out the same ones
+     */
+    SimulatedFleet(Mode mode, int services, int replicasPerService, String idPrefix, int ipBase, long seed) {
+        this.mode = mode;
+        this.services = services;
+        this.idPrefix = idPrefix;
+        this.ipBase = ipBase;
+        this.random = new Random(seed);
+        for (int service = 0; service < services; service++) {
+            for (int number = 1; number <= replicasPerService; number++) {
+                replicas.add(newReplica(service, number));
+            }
+        }
+    }
+
+    Mode mode() {
+        return mode;
+    }
+
+    void onEvent(Consumer<String> sink) {
+        this.eventSink = sink;
+    }
+
+    /** Backend IDs, as the registry shows them, that discovery should currently have in rotation. */
+    synchronized Set<String> expectedBackendIds() {
+        Set<String> ids = new HashSet<>();
+        for (Replica replica : replicas) {
+            if (!replica.unhealthy && !replica.shuttingDown) {
+                ids.add(idPrefix + replica.id);
+            }
+        }
+        return ids;
+    }
+
+    /** Replaces {@code count} healthy replicas with new ones under the same number, as a rolling update would. */
+    synchronized void churn(int count) {
+        long now = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Replica old = pickActive(false);
+            if (old == null) {
+                return;
+            }
+            if (pendingRegistrations.remove(idPrefix + old.id) != null) {
+                coalesced++;
+            }
+            Replica replacement = newReplica(old.service, old.number);
+            if (mode == Mode.SWARM) {
+                // A rolling update changes the service spec, so this one does produce a service event;
+                // the old task keeps running with desired state shutdown until the next tick
+                old.shuttingDown = true;
+                replicas.add(replacement);
+                serviceEvent(old.service);
+            } else {
+                replicas.remove(old);
+                replicas.add(replacement);
+                containerEvent(old, "die");
+                containerEvent(old, "destroy");
+                containerEvent(replacement, "create");
+                containerEvent(replacement, "start");
+            }
+            pendingRegistrations.put(idPrefix + replacement.id, now);
+        }
+    }
+
+    /** Flips the health of {@code count} replicas. */
+    synchronized void flap(int count) {
+        long now = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Replica replica = pickActive(true);
+            if (replica == null) {
+                return;
+            }
+            String id = idPrefix + replica.id;
+            replica.unhealthy = !replica.unhealthy;
+            if (replica.unhealthy) {
+                if (pendingRegistrations.remove(id) != null) {
+                    coalesced++;
+                } else {
+                    pendingRemovals.put(id, now);
+                }
+            } else if (pendingRemovals.remove(id) != null) {
+                coalesced++;
+            } else {
+                pendingRegistrations.put(id, now);
+            }
+            // Swarm sends no service event for task health, only a rescan sees it
+            if (mode == Mode.COMPOSE) {
+                containerEvent(replica, replica.unhealthy ? "health_status: unhealthy" : "health_status: healthy");
+            }
+        }
+    }
+
+    /**
+     * Stops Swarm tasks that were shutting down since the previous tick. Like Swarm's default
+     * task history limit, up to {@value #TASK_HISTORY_PER_SLOT} stopped tasks per slot are kept.
+     * A task stopping is not a spec change, so no event is sent.
+     */
+    synchronized void tick() {
+        replicas.removeIf(replica -> {
+            if (replica.shuttingDown) {
+                replica.stopped = true;
+                history.add(replica);
+                return true;
+            }
+            return false;
+        });
+        Map<String, Integer> kept = new HashMap<>();
+        for (int i = history.size() - 1; i >= 0; i--) {
+            Replica replica = history.get(i);
+            if (kept.merge(replica.service + "." + replica.number, 1, Integer::sum) > TASK_HISTORY_PER_SLOT) {
+                history.remove(i);
+            }
+        }
+    }
+
+    // -- Engine API responses -----------------------------------------------------------------
+
+    synchronized String renderServices() throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter json = new JsonWriter(out)) {
+            json.beginArray();
+            for (int service = 0; service < services; service++) {
+                json.beginObject();
+                json.name("ID").value(serviceId(service));
+                json.name("Spec").beginObject();
+                json.name("Name").value("sim_" + serviceName(service));
+                json.name("Labels").beginObject().endObject();
+                json.name("TaskTemplate").beginObject();
+                json.name("ContainerSpec").beginObject();
+                json.name("Image").value("game-server:latest");
+                json.name("Labels");
+                writeLabels(json, service, 0);
+                json.endObject();
+                json.endObject();
+                json.endObject();
+                json.endObject();
+            }
+            json.endArray();
+        }
+        return out.toString();
+    }
+
+    /**
+     * @param desiredStates only tasks with one of these desired states, or {@code null} for all
+     * @param ids           only tasks with one of these IDs, or {@code null} for all
+     */
+    synchronized String renderTasks(Set<String> desiredStates, Set<String> ids) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter json = new JsonWriter(out)) {
+            json.beginArray();
+            List<Replica> tasks = new ArrayList<>(replicas);
+            tasks.addAll(history);
+            for (Replica replica : tasks) {
+                String desiredState = replica.shuttingDown ? "shutdown" : "running";
+                if (desiredStates != null && !desiredStates.contains(desiredState) || ids != null && !ids.contains(replica.id)) {
+                    continue;
+                }
+                json.beginObject();
+                json.name("ID").value(replica.id);
+                json.name("ServiceID").value(serviceId(replica.service));
+                json.name("Slot").value(replica.number);
+                json.name("NodeID").value("node-1");
+                json.name("DesiredState").value(desiredState);
+                json.name("Status").beginObject();
+                json.name("State").value(replica.stopped ? "shutdown" : "running");
+                json.name("Err").value(replica.unhealthy ? "task: non-zero exit (1)" : "");
+                json.endObject();
+                json.name("NetworksAttachments").beginArray();
+                json.beginObject();
+                json.name("Network").beginObject().name("Spec").beginObject().name("Name").value("sim").endObject().endObject();
+                json.name("Addresses").beginArray().value(replica.ip + "/8").endArray();
+                json.endObject();
+                json.endArray();
+                json.endObject();
+            }
+            json.endArray();
+        }
+        return out.toString();
+    }
+
+    synchronized String renderContainers() throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter json = new JsonWriter(out)) {
+            json.beginArray();
+            for (Replica replica : replicas) {
+                json.beginObject();
+                json.name("Id").value(replica.id);
+                json.name("Names").beginArray().value("/" + containerName(replica)).endArray();
+                json.name("Image").value("game-server:latest");
+                json.name("State").value("running");
+                json.name("Status").value(replica.unhealthy ? "Up 5 minutes (unhealthy)" : "Up 5 minutes (healthy)");
+                json.name("Labels");
+                writeLabels(json, replica.service, replica.number);
+                json.name("NetworkSettings").beginObject().name("Networks").beginObject();
+                json.name("sim").beginObject().name("IPAddress").value(replica.ip).endObject();
+                json.endObject().endObject();
+                json.endObject();
+            }
+            json.endArray();
+        }
+        return out.toString();
+    }
+
+    // -- Helpers ------------------------------------------------------------------------------
+
+    private Replica newReplica(int service, int number) {
+        int ip = nextIp++;
+        return new Replica(randomId(), service, number, "10." + ipBase + "." + (ip >> 8 & 255) + "." + (ip & 255));
+    }
+
+    /** A random replica that is not shutting down, optionally including unhealthy ones. */
+    private Replica pickActive(boolean includeUnhealthy) {
+        for (int attempt = 0; attempt < 16; attempt++) {
+            Replica replica = replicas.get(random.nextInt(replicas.size()));
+            if (!replica.shuttingDown && (includeUnhealthy || !replica.unhealthy)) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private void writeLabels(JsonWriter json, int service, int number) throws IOException {
+        json.beginObject();
+        json.name(VelocityAutoRegister.PROJECT_LABEL).value(serviceName(service));
+        json.name("com.docker.compose.service").value(serviceName(service));
+        if (number > 0) {
+            json.name(VelocityAutoRegister.COMPOSE_CONTAINER_NUMBER_LABEL).value(String.valueOf(number));
+        }
+        json.endObject();
+    }
+
+    private void serviceEvent(int service) {
+        emit("{\"Type\":\"service\",\"Action\":\"update\",\"Actor\":{\"ID\":\"" + serviceId(service)
+            + "\",\"Attributes\":{\"name\":\"sim_" + serviceName(service) + "\"}},\"time\":" + System.currentTimeMillis() / 1000 + "}");
+    }
+
+    private void containerEvent(Replica replica, String action) {
+        emit("{\"Type\":\"container\",\"Action\":\"" + action + "\",\"status\":\"" + action + "\",\"id\":\"" + replica.id
+            + "\",\"Actor\":{\"ID\":\"" + replica.id + "\",\"Attributes\":{\"" + VelocityAutoRegister.PROJECT_LABEL + "\":\""
+            + serviceName(replica.service) + "\",\"name\":\"" + containerName(replica) + "\"}},\"time\":"
+            + System.currentTimeMillis() / 1000 + "}");
+    }
+
+    private void emit(String event) {
+        eventSink.accept(event);
+    }
+
+    private String randomId() {
+        return Long.toHexString(random.nextLong() | Long.MIN_VALUE) + Long.toHexString(random.nextLong() | Long.MIN_VALUE);
+    }
+
+    private static String serviceId(int service) {
+        return "svc" + service;
+    }
+
+    /** The first service is the lobby, so the routing path has servers to pick from. */
+    private static String serviceName(int service) {
+        return service == 0 ? "lobby" : "game-" + service;
+    }
+
+    private static String containerName(Replica replica) {
+        return "sim-" + serviceName(replica.service) + "-" + replica.number;
+    }
+}
@@ -0,0 +1,68 @@
+package net.plexverse.velocityautoregister;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides how long to wait before the next scheduled discovery cycle. After a cycle that
+ * changed the registry, cycles run at the burst interval for the burst window, since rollouts
+ * and scale-ups arrive as a series of changes. Once things are quiet the interval doubles from
+ * the base interval up to the idle interval. Failed cycles back off exponentially with jitter,
+ * so a broken Docker socket is not hammered and several proxies do not retry in lockstep.
+ *
+ * <p>Not thread-safe; only the discovery thread uses it.
+ */
+final class AdaptiveInterval {
+
+    enum Outcome {
+        CHANGED,
+        UNCHANGED,
+        FAILED
+    }
+
+    private final long burstMillis;
+    private final long burstWindowNanos;
+    private final long baseMillis;
+    private final long idleMillis;
+    private final long errorMaxMillis;
+
+    private long lastChangeNanos;
+    private boolean changedBefore;
+    private long nextIdleMillis;
+    private int consecutiveFailures;
+
+    AdaptiveInterval(long burstMillis, long burstWindowMillis, long baseMillis, long idleMillis, long errorMaxMillis) {
+        this.burstMillis = burstMillis;
+        this.burstWindowNanos = burstWindowMillis * 1_000_000;
+        this.baseMillis = baseMillis;
+        this.idleMillis = Math.max(baseMillis, idleMillis);
+        this.errorMaxMillis = Math.max(baseMillis, errorMaxMillis);
+        this.nextIdleMillis = baseMillis;
+    }
+
+    /**
+     * @return delay in milliseconds before the next cycle
+     */
+    long next(Outcome outcome, long nowNanos) {
+        if (outcome == Outcome.FAILED) {
+            consecutiveFailures++;
+            long delay = Math.min(errorMaxMillis, baseMillis << Math.min(consecutiveFailures - 1, 20));
+            // Equal jitter: somewhere between half and all of the backoff
+            return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        }
+        consecutiveFailures = 0;
+
+        if (outcome == Outcome.CHANGED) {
+            lastChangeNanos = nowNanos;
+            changedBefore = true;
+            nextIdleMillis = baseMillis;
+            return burstMillis;
+        }
+
+        if (changedBefore && nowNanos - lastChangeNanos < burstWindowNanos) {
+            return burstMillis;
+        }
+        long delay = nextIdleMillis;
+        nextIdleMillis = Math.min(idleMillis, nextIdleMillis * 2);
+        return delay;
+    }
+}
@@ -0,0 +1,148 @@
+package net.plexverse.velocityautoregister;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mutable runtime state of one backend that changes faster than discovery runs. The same
+ * instance is carried across snapshots for as long as the server name stays registered.
+ */
+final class BackendState {
+
+    /** Weight of the newest sample in the smoothed round-trip time. */
+    private static final double RTT_SMOOTHING = 0.3;
+
+    private final AtomicInteger players = new AtomicInteger();
+    private final AtomicBoolean probeInFlight = new AtomicBoolean();
+    private final LatencyHistogram pingLatency = new LatencyHistogram();
+    private final LongAdder selections = new LongAdder();
+
+    // Written only by the probe callback, of which at most one is in flight per backend
+    private volatile boolean routable = true;
+    private volatile int consecutiveFailures;
+    private volatile int consecutiveSuccesses;
+    private volatile double smoothedRttMillis = -1;
+
+    // Written only by the discovery thread
+    private volatile boolean draining;
+    private volatile long drainStartedNanos;
+
+    /** Players on this backend, including players routed here who have not finished connecting yet. */
+    int players() {
+        return players.get();
+    }
+
+    void addPlayer() {
+        players.incrementAndGet();
+    }
+
+    void removePlayer() {
+        players.updateAndGet(count -> count > 0 ? count - 1 : 0);
+    }
+
+    /** How many joining players the balancer has sent here. */
+    long selections() {
+        return selections.sum();
+    }
+
+    void selected() {
+        selections.increment();
+    }
+
+    /** Whether the backend is shutting down and only keeps the players it already has. */
+    boolean draining() {
+        return draining;
+    }
+
+    /** {@link System#nanoTime()} when draining started. */
+    long drainStartedNanos() {
+        return drainStartedNanos;
+    }
+
+    void startDraining(long nowNanos) {
+        drainStartedNanos = nowNanos;
+        draining = true;
+    }
+
+    void stopDraining() {
+        draining = false;
+    }
+
+    /** Whether the last status pings succeeded within the latency threshold. New backends start routable. */
+    boolean routable() {
+        return routable;
+    }
+
+    int consecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /** Smoothed ping round-trip time, or -1 before the first successful ping. */
+    double smoothedRttMillis() {
+        return smoothedRttMillis;
+    }
+
+    LatencyHistogram pingLatency() {
+        return pingLatency;
+    }
+
+    /** @return false if a probe is already running for this backend */
+    boolean tryStartProbe() {
+        return probeInFlight.compareAndSet(false, true);
+    }
+
+    /**
+     * An unroutable backend only becomes routable again after {@code riseThreshold} pings in a
+     * row within the latency threshold, so one lucky ping does not put a flapping server back.
+     *
+     * @return true if this changed whether the backend is routable
+     */
+    boolean probeSucceeded(long rttNanos, long latencyThresholdMillis, int riseThreshold) {
+        try {
+            pingLatency.record(rttNanos);
+            double sample = rttNanos / 1_000_000.0;
+            double previous = smoothedRttMillis;
+            double smoothed = previous < 0 ? sample : previous + RTT_SMOOTHING * (sample - previous);
+            smoothedRttMillis = smoothed;
+            consecutiveFailures = 0;
+            if (smoothed > latencyThresholdMillis) {
+                consecutiveSuccesses = 0;
+                return setRoutable(false);
+            }
+            int successes = consecutiveSuccesses + 1;
+            consecutiveSuccesses = successes;
+            return (routable || successes >= riseThreshold) && setRoutable(true);
+        } finally {
+            // Only now may the next probe start, so two results are never applied at once
+            probeInFlight.set(false);
+        }
+    }
+
+    /**
+     * @return true if this changed whether the backend is routable
+     */
+    boolean probeFailed(int failureThreshold) {
+        try {
+            int failures = consecutiveFailures + 1;
+            consecutiveFailures = failures;
+            consecutiveSuccesses = 0;
+            return failures >= failureThreshold && setRoutable(false);
+        } finally {
+            probeInFlight.set(false);
+        }
+    }
+
+    /** Starts a restored backend out of rotation when it was unroutable at the time it was saved. */
+    void markUnroutable() {
+        routable = false;
+    }
+
+    private boolean setRoutable(boolean value) {
+        if (routable == value) {
+            return false;
+        }
+        routable = value;
+        return true;
+    }
+}
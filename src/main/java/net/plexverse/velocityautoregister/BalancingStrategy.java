@@ -0,0 +1,122 @@
+package net.plexverse.velocityautoregister;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Built-in {@link InitialServerBalancer}s, selected with {@code routing.strategy} in the config.
+ * Every strategy skips backends that failed their health checks, and only falls back to them
+ * when no candidate is routable so a fleet-wide probe outage does not lock players out.
+ */
+enum BalancingStrategy implements InitialServerBalancer {
+
+    /** Uniformly random backend. */
+    @SerializedName("random")
+    RANDOM {
+        @Override
+        public RegistryEntry select(RegistryEntry[] candidates) {
+            if (candidates.length == 0) {
+                return null;
+            }
+            int offset = ThreadLocalRandom.current().nextInt(candidates.length);
+            RegistryEntry pick = candidates[offset];
+            if (pick.isRoutable()) {
+                return pick;
+            }
+            RegistryEntry routable = firstRoutable(candidates, offset);
+            return routable != null ? routable : pick;
+        }
+    },
+
+    /** Backend with the fewest players. Scans every candidate, starting at a random offset to spread ties. */
+    @SerializedName("least-players")
+    LEAST_PLAYERS {
+        @Override
+        public RegistryEntry select(RegistryEntry[] candidates) {
+            int length = candidates.length;
+            if (length == 0) {
+                return null;
+            }
+            int offset = ThreadLocalRandom.current().nextInt(length);
+            RegistryEntry best = null;
+            int bestPlayers = Integer.MAX_VALUE;
+            for (int i = 0; i < length && bestPlayers > 0; i++) {
+                RegistryEntry candidate = candidates[(offset + i) % length];
+                if (!candidate.isRoutable()) {
+                    continue;
+                }
+                int players = candidate.state().players();
+                if (players < bestPlayers) {
+                    best = candidate;
+                    bestPlayers = players;
+                }
+            }
+            return best != null ? best : candidates[offset];
+        }
+    },
+
+    /** Two random backends, the one with fewer players wins. Constant time regardless of fleet size. */
+    @SerializedName("power-of-two")
+    POWER_OF_TWO {
+        @Override
+        public RegistryEntry select(RegistryEntry[] candidates) {
+            return pickTwo(candidates, false);
+        }
+    },
+
+    /**
+     * Two random backends, the one with the lower fill ratio (players / capacity label) wins,
+     * so larger backends receive proportionally more players.
+     */
+    @SerializedName("weighted")
+    WEIGHTED {
+        @Override
+        public RegistryEntry select(RegistryEntry[] candidates) {
+            return pickTwo(candidates, true);
+        }
+    };
+
+    private static RegistryEntry pickTwo(RegistryEntry[] candidates, boolean byCapacity) {
+        int length = candidates.length;
+        if (length <= 1) {
+            return length == 0 ? null : candidates[0];
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(length);
+        int second = random.nextInt(length - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        RegistryEntry a = candidates[first];
+        RegistryEntry b = candidates[second];
+        if (!a.isRoutable() || !b.isRoutable()) {
+            if (a.isRoutable() || b.isRoutable()) {
+                return a.isRoutable() ? a : b;
+            }
+            RegistryEntry routable = firstRoutable(candidates, first);
+            return routable != null ? routable : a;
+        }
+        if (byCapacity) {
+            // Compare players / capacity without dividing: a.players * b.capacity vs b.players * a.capacity
+            long loadA = (long) a.state().players() * b.capacity();
+            long loadB = (long) b.state().players() * a.capacity();
+            return loadA <= loadB ? a : b;
+        }
+        return a.state().players() <= b.state().players() ? a : b;
+    }
+
+    /** First routable candidate scanning from {@code offset} with wrap-around, or {@code null} if there is none. */
+    private static RegistryEntry firstRoutable(RegistryEntry[] candidates, int offset) {
+        int length = candidates.length;
+        for (int i = 0; i < length; i++) {
+            RegistryEntry candidate = candidates[(offset + i) % length];
+            if (candidate.isRoutable()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+}
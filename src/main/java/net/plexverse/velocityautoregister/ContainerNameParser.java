@@ -0,0 +1,146 @@
+package net.plexverse.velocityautoregister;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Derives the service name from a compose container name, e.g. {@code local-docker_micro-battles_1}
+ * to {@code micro-battles}, giving the same result as the split and regex based parsing it
+ * replaced unless the replica suffix option is on. Parsing is a single pass
+ * over the name that only allocates the returned substring, and results are memoised by
+ * container ID since a container's name never changes under it.
+ *
+ * <p>Not thread-safe; each Docker endpoint has its own, used by one scan at a time.
+ */
+final class ContainerNameParser {
+
+    private static final class Cached {
+        final String containerName;
+        final String serviceName;
+        long seenInCycle;
+
+        Cached(String containerName, String serviceName) {
+            this.containerName = containerName;
+            this.serviceName = serviceName;
+        }
+    }
+
+    private final String[] stackPrefixes;
+    private final boolean stripReplicaSuffix;
+    private final Map<String, Cached> byContainerId = new HashMap<>();
+    private long cycle;
+
+    /**
+     * @param stackPrefixes      stack names stripped from dash-separated names; longer ones are tried first
+     * @param stripReplicaSuffix whether to strip the {@code -N} replica suffix from compose v2 names,
+     *                           which the previous parsing left on and so renames those servers
+     */
+    ContainerNameParser(List<String> stackPrefixes, boolean stripReplicaSuffix) {
+        this.stackPrefixes = stackPrefixes.stream()
+            .filter(prefix -> prefix != null && !prefix.isEmpty())
+            .sorted(Comparator.comparingInt(String::length).reversed())
+            .toArray(String[]::new);
+        this.stripReplicaSuffix = stripReplicaSuffix;
+    }
+
+    /** Starts a discovery cycle; containers not looked up before {@link #evictUnseen()} are forgotten. */
+    void beginCycle() {
+        cycle++;
+    }
+
+    /** Drops cached names of containers that were not seen since {@link #beginCycle()}. */
+    void evictUnseen() {
+        long current = cycle;
+        byContainerId.values().removeIf(cached -> cached.seenInCycle != current);
+    }
+
+    String serviceName(String containerId, String containerName) {
+        Cached cached = byContainerId.get(containerId);
+        if (cached == null || !cached.containerName.equals(containerName)) {
+            cached = new Cached(containerName, parse(containerName));
+            byContainerId.put(containerId, cached);
+        }
+        cached.seenInCycle = cycle;
+        return cached.serviceName;
+    }
+
+    /**
+     * Compose v1 names ({@code stack_service_N}) lose the replica suffix and everything up to
+     * the first underscore. Names without an underscore lose a leading configured stack prefix,
+     * and with it any trailing dashes; their {@code -N} suffix is only stripped when enabled.
+     * With the suffix left on, the result is the same as the parsing this replaced.
+     */
+    String parse(String containerName) {
+        int start = 0;
+        int end = containerName.length();
+
+        int firstUnderscore = containerName.indexOf('_');
+        if (firstUnderscore >= 0) {
+            // Trailing underscores are ignored when looking for the replica number
+            int trimmed = end;
+            while (trimmed > 0 && containerName.charAt(trimmed - 1) == '_') {
+                trimmed--;
+            }
+            int lastUnderscore = containerName.lastIndexOf('_', trimmed - 1);
+            if (lastUnderscore >= 0 && isReplicaNumber(containerName, lastUnderscore + 1, trimmed)) {
+                end = lastUnderscore;
+            }
+            if (firstUnderscore < end) {
+                start = firstUnderscore + 1;
+            }
+        } else {
+            if (stripReplicaSuffix) {
+                // Compose v2 names end in -N, the replica number
+                int lastDash = containerName.lastIndexOf('-');
+                if (lastDash > 0 && isReplicaNumber(containerName, lastDash + 1, end)) {
+                    end = lastDash;
+                }
+            }
+            for (String prefix : stackPrefixes) {
+                int length = prefix.length();
+                if (length < end && containerName.charAt(length) == '-' && containerName.startsWith(prefix)) {
+                    // Trailing dashes go with the prefix; only strip when something is left of the service name
+                    int trimmed = end;
+                    while (trimmed > length + 1 && containerName.charAt(trimmed - 1) == '-') {
+                        trimmed--;
+                    }
+                    if (trimmed > length + 1) {
+                        start = length + 1;
+                        end = trimmed;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return start == 0 && end == containerName.length() ? containerName : containerName.substring(start, end);
+    }
+
+    /** Whether {@link Integer#parseInt} would accept the range, which is what compose names were checked with before. */
+    private static boolean isReplicaNumber(String value, int from, int to) {
+        long limit = Integer.MAX_VALUE;
+        if (from < to && (value.charAt(from) == '-' || value.charAt(from) == '+')) {
+            if (value.charAt(from) == '-') {
+                limit++;
+            }
+            from++;
+        }
+        if (from >= to) {
+            return false;
+        }
+        long number = 0;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            number = number * 10 + (c - '0');
+            if (number > limit) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,37 @@
+package net.plexverse.velocityautoregister;
+
+import java.util.Map;
+
+/**
+ * A running game server replica found by one discovery cycle, before it is reconciled
+ * against the registry.
+ *
+ * @param id          Swarm task ID or container ID; identifies the backend across cycles
+ * @param name        Velocity server name, {@code <serviceName>-<replica>}
+ * @param replica     stable replica number (Swarm task slot or compose container number)
+ * @param host        IP or hostname the backend is reachable at
+ * @param labels      container spec labels (Swarm) or container labels (compose), unmodifiable
+ * @param healthy     passing its Docker health check: no task error and not {@code (unhealthy)} or
+ *                    {@code (health: starting)}; after {@link HealthHysteresis}, whether it may get new players
+ * @param draining    the backend is being shut down (Swarm desired state {@code shutdown} or the
+ *                    drain label); it keeps its current players but gets no new ones
+ */
+record DiscoveredBackend(
+    String id,
+    String name,
+    String serviceName,
+    int replica,
+    String host,
+    int port,
+    String projectId,
+    int capacity,
+    Map<String, String> labels,
+    boolean healthy,
+    boolean draining
+) {
+
+    DiscoveredBackend withHealthy(boolean healthy) {
+        return healthy == this.healthy ? this
+            : new DiscoveredBackend(id, name, serviceName, replica, host, port, projectId, capacity, labels, healthy, draining);
+    }
+}
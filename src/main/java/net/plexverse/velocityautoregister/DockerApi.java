@@ -0,0 +1,473 @@
+package net.plexverse.velocityautoregister;
+
+import com.github.dockerjava.transport.DockerHttpClient;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thin client for the three Docker Engine list endpoints discovery polls. Filters are pushed
+ * down to the daemon and responses are read with a streaming parser that only materialises
+ * the handful of fields discovery needs; everything else in the (large) payloads is skipped.
+ */
+final class DockerApi implements Closeable {
+
+    private static final Gson GSON = new Gson();
+
+    private final DockerHttpClient httpClient;
+    private final PluginMetrics metrics;
+    private final String endpointName;
+
+    /**
+     * @param endpointName name of the Docker endpoint, to tell daemons apart in metrics
+     */
+    DockerApi(DockerHttpClient httpClient, PluginMetrics metrics, String endpointName) {
+        this.httpClient = httpClient;
+        this.metrics = metrics;
+        this.endpointName = endpointName;
+    }
+
+    /** A Swarm service. {@code labels} are the container spec labels, or the service labels if there are none. */
+    record SwarmService(String id, String name, Map<String, String> labels) {
+    }
+
+    /**
+     * A Swarm task. {@code slot} is 0 for global services. {@code state} is what the task is doing,
+     * {@code desiredState} what the orchestrator wants (e.g. {@code shutdown} while it is being
+     * replaced). {@code networkAddresses} maps network name to the task's IP on it, in attachment order.
+     */
+    record SwarmTask(String id, String serviceId, int slot, String nodeId, String state, String desiredState,
+                     String err, Map<String, String> networkAddresses) {
+    }
+
+    /**
+     * A container from {@code /containers/json}. {@code name} has its leading slash removed,
+     * {@code networkAddresses} maps network name to the container's IP on it, and
+     * {@code publishedPorts} maps a TCP port inside the container to the host port it is published on.
+     */
+    record ComposeContainer(String id, String name, String status, Map<String, String> labels,
+                            Map<String, String> networkAddresses, Map<Integer, Integer> publishedPorts) {
+    }
+
+    /**
+     * @param labelFilter only return services with this label set, or {@code null} for all services
+     */
+    List<SwarmService> listServices(String labelFilter) throws IOException {
+        Map<String, List<String>> filters = new LinkedHashMap<>();
+        if (labelFilter != null) {
+            filters.put("label", List.of(labelFilter));
+        }
+        return get("/services", filters, DockerApi::readServices);
+    }
+
+    List<SwarmTask> listTasks(String... desiredStates) throws IOException {
+        return get("/tasks", Map.of("desired-state", List.of(desiredStates)), DockerApi::readTasks);
+    }
+
+    /** Looks up specific tasks, whatever their desired state. */
+    List<SwarmTask> listTasksById(Collection<String> ids) throws IOException {
+        return get("/tasks", Map.of("id", List.copyOf(ids)), DockerApi::readTasks);
+    }
+
+    List<ComposeContainer> listContainers(String labelFilter, String status) throws IOException {
+        Map<String, List<String>> filters = new LinkedHashMap<>();
+        filters.put("label", List.of(labelFilter));
+        filters.put("status", List.of(status));
+        return get("/containers/json", filters, DockerApi::readContainers);
+    }
+
+    private interface BodyReader<T> {
+        T read(JsonReader reader) throws IOException;
+    }
+
+    private <T> T get(String endpoint, Map<String, List<String>> filters, BodyReader<T> bodyReader) throws IOException {
+        String path = endpoint;
+        if (!filters.isEmpty()) {
+            path += "?filters=" + URLEncoder.encode(GSON.toJson(filters), StandardCharsets.UTF_8);
+        }
+
+        DockerHttpClient.Request request = DockerHttpClient.Request.builder()
+            .method(DockerHttpClient.Request.Method.GET)
+            .path(path)
+            .build();
+
+        long start = System.nanoTime();
+        boolean success = false;
+        try (DockerHttpClient.Response response = httpClient.execute(request)) {
+            InputStream body = response.getBody();
+            if (response.getStatusCode() / 100 != 2) {
+                String message = body != null ? new String(body.readAllBytes(), StandardCharsets.UTF_8).trim() : "";
+                throw new DockerApiException("GET " + endpoint + " returned "
+                    + response.getStatusCode() + (message.isEmpty() ? "" : ": " + message));
+            }
+            try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                T result = bodyReader.read(reader);
+                success = true;
+                return result;
+            }
+        } finally {
+            metrics.dockerRequest(endpointName, endpoint, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    static final class DockerApiException extends IOException {
+        DockerApiException(String message) {
+            super(message);
+        }
+    }
+
+    // -- /services ---------------------------------------------------------------------------
+
+    private static List<SwarmService> readServices(JsonReader reader) throws IOException {
+        List<SwarmService> services = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String id = null;
+            String name = null;
+            Map<String, String> serviceLabels = Collections.emptyMap();
+            Map<String, String> containerLabels = Collections.emptyMap();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "ID" -> id = nextString(reader);
+                    case "Spec" -> {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            switch (reader.nextName()) {
+                                case "Name" -> name = nextString(reader);
+                                case "Labels" -> serviceLabels = readStringMap(reader);
+                                case "TaskTemplate" -> containerLabels = readContainerSpecLabels(reader);
+                                default -> reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    }
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            // Labels are usually on the container spec; fall back to the service labels
+            services.add(new SwarmService(id, name, containerLabels.isEmpty() ? serviceLabels : containerLabels));
+        }
+        reader.endArray();
+        return services;
+    }
+
+    private static Map<String, String> readContainerSpecLabels(JsonReader reader) throws IOException {
+        Map<String, String> labels = Collections.emptyMap();
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return labels;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"ContainerSpec".equals(reader.nextName()) || reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("Labels".equals(reader.nextName())) {
+                    labels = readStringMap(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+        return labels;
+    }
+
+    // -- /tasks ------------------------------------------------------------------------------
+
+    private static List<SwarmTask> readTasks(JsonReader reader) throws IOException {
+        List<SwarmTask> tasks = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String id = null;
+            String serviceId = null;
+            int slot = 0;
+            String nodeId = null;
+            String state = null;
+            String desiredState = null;
+            String err = null;
+            Map<String, String> networkAddresses = Collections.emptyMap();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "ID" -> id = nextString(reader);
+                    case "ServiceID" -> serviceId = nextString(reader);
+                    case "DesiredState" -> desiredState = nextString(reader);
+                    case "Slot" -> slot = reader.nextInt();
+                    case "NodeID" -> nodeId = nextString(reader);
+                    case "Status" -> {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            switch (reader.nextName()) {
+                                case "State" -> state = nextString(reader);
+                                case "Err" -> err = nextString(reader);
+                                default -> reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    }
+                    case "NetworksAttachments" -> networkAddresses = readNetworkAttachments(reader);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            tasks.add(new SwarmTask(id, serviceId, slot, nodeId, state, desiredState, err, networkAddresses));
+        }
+        reader.endArray();
+        return tasks;
+    }
+
+    /**
+     * Reads {@code [{"Network": {"Spec": {"Name": ...}}, "Addresses": ["10.0.1.5/24"]}]} into
+     * network name to bare IP.
+     */
+    private static Map<String, String> readNetworkAttachments(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return Collections.emptyMap();
+        }
+        Map<String, String> addresses = new LinkedHashMap<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String network = null;
+            String address = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "Network" -> network = readNetworkName(reader);
+                    case "Addresses" -> address = readFirstAddress(reader);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (network != null && address != null && !address.isEmpty()) {
+                addresses.put(network, address);
+            }
+        }
+        reader.endArray();
+        return addresses;
+    }
+
+    /** Returns the first {@code 10.0.1.5/24} style entry of the array without its prefix length. */
+    private static String readFirstAddress(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        String address = null;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String cidr = reader.nextString();
+            if (address == null) {
+                int slash = cidr.indexOf('/');
+                address = slash >= 0 ? cidr.substring(0, slash) : cidr;
+            }
+        }
+        reader.endArray();
+        return address;
+    }
+
+    private static String readNetworkName(JsonReader reader) throws IOException {
+        String name = null;
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"Spec".equals(reader.nextName()) || reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("Name".equals(reader.nextName())) {
+                    name = nextString(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+        return name;
+    }
+
+    // -- /containers/json --------------------------------------------------------------------
+
+    private static List<ComposeContainer> readContainers(JsonReader reader) throws IOException {
+        List<ComposeContainer> containers = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String id = null;
+            String name = null;
+            String status = null;
+            Map<String, String> labels = Collections.emptyMap();
+            Map<String, String> networkAddresses = Collections.emptyMap();
+            Map<Integer, Integer> publishedPorts = Collections.emptyMap();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "Id" -> id = nextString(reader);
+                    case "Names" -> name = readFirstName(reader);
+                    case "Status" -> status = nextString(reader);
+                    case "Labels" -> labels = readStringMap(reader);
+                    case "NetworkSettings" -> networkAddresses = readContainerNetworks(reader);
+                    case "Ports" -> publishedPorts = readPublishedPorts(reader);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            containers.add(new ComposeContainer(id, name, status, labels, networkAddresses, publishedPorts));
+        }
+        reader.endArray();
+        return containers;
+    }
+
+    /**
+     * Reads {@code {"Networks": {"<name>": {"IPAddress": "172.18.0.4", ...}}}} into network name to IP.
+     */
+    private static Map<String, String> readContainerNetworks(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return Collections.emptyMap();
+        }
+        Map<String, String> addresses = new LinkedHashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"Networks".equals(reader.nextName()) || reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String network = reader.nextName();
+                String address = null;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("IPAddress".equals(reader.nextName())) {
+                        address = nextString(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                if (address != null && !address.isEmpty()) {
+                    addresses.put(network, address);
+                }
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+        return addresses;
+    }
+
+    /**
+     * Reads {@code [{"PrivatePort": 25565, "PublicPort": 32768, "Type": "tcp"}, ...]} into private
+     * to public port. Ports that are not published, and UDP ports, are left out.
+     */
+    private static Map<Integer, Integer> readPublishedPorts(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return Collections.emptyMap();
+        }
+        Map<Integer, Integer> ports = new HashMap<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int privatePort = 0;
+            int publicPort = 0;
+            String type = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "PrivatePort" -> privatePort = reader.nextInt();
+                    case "PublicPort" -> publicPort = reader.nextInt();
+                    case "Type" -> type = nextString(reader);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (privatePort > 0 && publicPort > 0 && (type == null || "tcp".equals(type))) {
+                // Published on IPv4 and IPv6 separately; both use the same host port
+                ports.putIfAbsent(privatePort, publicPort);
+            }
+        }
+        reader.endArray();
+        return ports.isEmpty() ? Collections.emptyMap() : ports;
+    }
+
+    private static String readFirstName(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        String first = null;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String name = reader.nextString();
+            if (first == null) {
+                first = name.startsWith("/") ? name.substring(1) : name;
+            }
+        }
+        reader.endArray();
+        return first;
+    }
+
+    // -- helpers -----------------------------------------------------------------------------
+
+    private static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static Map<String, String> readStringMap(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return Collections.emptyMap();
+        }
+        Map<String, String> map = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            map.put(reader.nextName(), nextString(reader));
+        }
+        reader.endObject();
+        // Handed on to the registry and the public API as-is
+        return Collections.unmodifiableMap(map);
+    }
+}
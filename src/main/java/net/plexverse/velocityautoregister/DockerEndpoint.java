@@ -0,0 +1,177 @@
+package net.plexverse.velocityautoregister;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.core.DefaultDockerClientConfig;
+import com.github.dockerjava.core.DockerClientImpl;
+import com.github.dockerjava.httpclient5.ApacheDockerHttpClient;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Future;
+
+/**
+ * One Docker daemon that servers are discovered on, with its own clients and the state its
+ * scans carry from cycle to cycle. Only one scan of an endpoint runs at a time, so that state
+ * needs no locking.
+ */
+final class DockerEndpoint implements Closeable {
+
+    private final String name;
+    private final String host;
+    private final String advertisedHost;
+    private final boolean remote;
+    private final DockerApi api;
+    private final DockerClient eventsClient;
+    private final ContainerNameParser containerNameParser;
+    private final Logger logger;
+
+    /** Cleared once the project label turns out to live on container specs rather than services. */
+    volatile boolean serviceLabelFilter = true;
+    /** Set once the full service list has been checked for services labelled only on their container spec. */
+    volatile boolean labelPlacementChecked;
+    /** Whether the last scan found Swarm services; Swarm container events only cover this daemon's node. */
+    volatile boolean swarm;
+    /** Set once the warning about container addresses the proxy may not reach has been logged. */
+    volatile boolean addressWarned;
+    /** The scan started by an earlier cycle that has not finished yet, if any. Discovery thread only. */
+    Future<?> pendingScan;
+    DockerEventListener eventListener;
+
+    DockerEndpoint(PluginConfig.Endpoint endpoint, PluginConfig.Discovery discovery, PluginMetrics metrics, Logger logger) {
+        this.name = endpoint.getName();
+        this.host = endpoint.getHost();
+        this.advertisedHost = endpoint.getAdvertisedHost();
+        this.remote = isRemoteHost(host);
+        this.logger = logger;
+
+        DefaultDockerClientConfig clientConfig = DefaultDockerClientConfig.createDefaultConfigBuilder()
+            .withDockerHost(host)
+            .build();
+
+        // Discovery requests are bounded so a hung daemon cannot stall a cycle forever
+        ApacheDockerHttpClient apiHttpClient = new ApacheDockerHttpClient.Builder()
+            .dockerHost(clientConfig.getDockerHost())
+            .connectionTimeout(Duration.ofMillis(discovery.getConnectTimeoutMillis()))
+            .responseTimeout(Duration.ofMillis(discovery.getResponseTimeoutMillis()))
+            .build();
+        this.api = new DockerApi(apiHttpClient, metrics, name);
+
+        // The events stream stays open indefinitely, so its client only gets a connect timeout
+        ApacheDockerHttpClient eventsHttpClient = new ApacheDockerHttpClient.Builder()
+            .dockerHost(clientConfig.getDockerHost())
+            .connectionTimeout(Duration.ofMillis(discovery.getConnectTimeoutMillis()))
+            .build();
+        this.eventsClient = DockerClientImpl.getInstance(clientConfig, eventsHttpClient);
+
+        this.containerNameParser = new ContainerNameParser(discovery.getStackPrefixes(), discovery.isStripReplicaSuffix());
+    }
+
+    String name() {
+        return name;
+    }
+
+    /** Whether the daemon is on another machine, so its container networks are not the proxy's. */
+    boolean isRemote() {
+        return remote;
+    }
+
+    /** Host compose containers are registered at, with their published game port, or blank. */
+    String advertisedHost() {
+        return advertisedHost;
+    }
+
+    DockerApi api() {
+        return api;
+    }
+
+    DockerClient eventsClient() {
+        return eventsClient;
+    }
+
+    ContainerNameParser containerNameParser() {
+        return containerNameParser;
+    }
+
+    /**
+     * A unix or npipe socket is local, as is a loopback name or an IP address of one of the
+     * proxy's own interfaces. Anything else, including a host that cannot be parsed, counts as
+     * remote. Host names are never resolved, so this does not wait on DNS.
+     */
+    private static boolean isRemoteHost(String dockerHost) {
+        URI uri;
+        try {
+            uri = new URI(dockerHost);
+        } catch (URISyntaxException e) {
+            return true;
+        }
+        String scheme = uri.getScheme();
+        if ("unix".equalsIgnoreCase(scheme) || "npipe".equalsIgnoreCase(scheme)) {
+            return false;
+        }
+        String hostName = uri.getHost();
+        if (hostName == null || hostName.isEmpty()) {
+            return true;
+        }
+        if (hostName.startsWith("[") && hostName.endsWith("]")) {
+            hostName = hostName.substring(1, hostName.length() - 1);
+        }
+        String lower = hostName.toLowerCase(Locale.ROOT);
+        if (lower.equals("localhost") || lower.endsWith(".localhost") || lower.equals("localhost.localdomain")) {
+            return false;
+        }
+        if (!isIpLiteral(lower)) {
+            return true;
+        }
+        try {
+            // A literal is parsed, not looked up
+            InetAddress address = InetAddress.getByName(hostName);
+            return !address.isLoopbackAddress() && !address.isAnyLocalAddress()
+                && NetworkInterface.getByInetAddress(address) == null;
+        } catch (UnknownHostException | SocketException e) {
+            return true;
+        }
+    }
+
+    private static boolean isIpLiteral(String hostName) {
+        if (hostName.indexOf(':') >= 0) {
+            return true;
+        }
+        // Dotted quad only: anything else would make InetAddress fall back to a DNS lookup
+        String[] octets = hostName.split("\\.", -1);
+        if (octets.length != 4) {
+            return false;
+        }
+        for (String octet : octets) {
+            if (octet.isEmpty() || octet.length() > 3 || !octet.chars().allMatch(c -> c >= '0' && c <= '9')
+                || Integer.parseInt(octet) > 255) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (eventListener != null) {
+            eventListener.stop();
+        }
+        try {
+            api.close();
+        } catch (Exception e) {
+            logger.warn("Error closing Docker API client for {}", name, e);
+        }
+        try {
+            eventsClient.close();
+        } catch (Exception e) {
+            logger.warn("Error closing Docker client for {}", name, e);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package net.plexverse.velocityautoregister;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.EventType;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Subscribes to the Docker {@code /events} stream and asks for a discovery run whenever a
+ * game server service or container changes. The stream is re-opened after errors so a
+ * daemon restart does not leave the plugin deaf; missed events are picked up by the
+ * fallback reconcile in {@link VelocityAutoRegister}.
+ *
+ * <p>Container events are node-local: a daemon only reports containers on its own node, and
+ * Swarm service events only fire when a service spec changes. Tasks that die or move on other
+ * nodes are left to the fallback reconcile, which runs at the poll interval while Swarm
+ * services are found.
+ */
+final class DockerEventListener {
+
+    private static final Set<String> CONTAINER_ACTIONS = Set.of("create", "start", "die", "stop", "kill", "destroy");
+    private static final Set<String> SERVICE_ACTIONS = Set.of("create", "update", "remove");
+
+    private final DockerClient dockerClient;
+    private final Logger logger;
+    private final Runnable onChange;
+    private final BiConsumer<Runnable, Long> reconnectScheduler;
+    private final long reconnectDelaySeconds;
+
+    private volatile boolean running;
+    private volatile Closeable stream;
+
+    /**
+     * @param onChange            invoked from the event stream thread for each relevant event; must be cheap
+     * @param reconnectScheduler  runs the given task after the given delay in seconds
+     */
+    DockerEventListener(DockerClient dockerClient, Logger logger, Runnable onChange,
+                        BiConsumer<Runnable, Long> reconnectScheduler, long reconnectDelaySeconds) {
+        this.dockerClient = dockerClient;
+        this.logger = logger;
+        this.onChange = onChange;
+        this.reconnectScheduler = reconnectScheduler;
+        this.reconnectDelaySeconds = reconnectDelaySeconds;
+    }
+
+    void start() {
+        running = true;
+        subscribe();
+    }
+
+    void stop() {
+        running = false;
+        Closeable current = stream;
+        stream = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (Exception e) {
+                logger.debug("Error closing Docker event stream", e);
+            }
+        }
+    }
+
+    private void subscribe() {
+        if (!running) {
+            return;
+        }
+
+        try {
+            dockerClient.eventsCmd()
+                .withEventTypeFilter(EventType.CONTAINER, EventType.SERVICE)
+                .exec(new ResultCallback.Adapter<Event>() {
+                    private final AtomicBoolean finished = new AtomicBoolean();
+
+                    @Override
+                    public void onStart(Closeable closeable) {
+                        super.onStart(closeable);
+                        stream = closeable;
+                        logger.info("Subscribed to Docker event stream");
+                        // Anything that happened while we were not listening is caught by a full rescan
+                        onChange.run();
+                    }
+
+                    @Override
+                    public void onNext(Event event) {
+                        if (isRelevant(event)) {
+                            logger.debug("Docker event {} {} ({})", event.getType(), event.getAction(),
+                                event.getActor() != null ? event.getActor().getId() : event.getId());
+                            onChange.run();
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        if (!finished.compareAndSet(false, true)) {
+                            return;
+                        }
+                        if (running) {
+                            logger.warn("Docker event stream failed ({}), reconnecting in {}s",
+                                throwable.getMessage(), reconnectDelaySeconds);
+                        }
+                        try {
+                            close();
+                        } catch (IOException e) {
+                            logger.debug("Error closing Docker event stream", e);
+                        }
+                        scheduleReconnect();
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        super.onComplete();
+                        if (!finished.compareAndSet(false, true)) {
+                            return;
+                        }
+                        if (running) {
+                            logger.info("Docker event stream closed, reconnecting in {}s", reconnectDelaySeconds);
+                        }
+                        scheduleReconnect();
+                    }
+                });
+        } catch (Exception e) {
+            logger.warn("Failed to subscribe to Docker event stream ({}), retrying in {}s",
+                e.getMessage(), reconnectDelaySeconds);
+            scheduleReconnect();
+        }
+    }
+
+    private void scheduleReconnect() {
+        stream = null;
+        if (running) {
+            reconnectScheduler.accept(this::subscribe, reconnectDelaySeconds);
+        }
+    }
+
+    private static boolean isRelevant(Event event) {
+        String action = event.getAction() != null ? event.getAction() : event.getStatus();
+        if (action == null || event.getType() == null) {
+            return false;
+        }
+
+        if (event.getType() == EventType.SERVICE) {
+            // Service events only carry the name, so any service change triggers a rescan
+            return SERVICE_ACTIONS.contains(action);
+        }
+
+        if (event.getType() != EventType.CONTAINER) {
+            return false;
+        }
+
+        // Container events carry the container labels as actor attributes
+        Map<String, String> attributes = event.getActor() != null ? event.getActor().getAttributes() : null;
+        if (attributes == null || !attributes.containsKey(VelocityAutoRegister.PROJECT_LABEL)) {
+            return false;
+        }
+
+        // Health events look like "health_status: healthy"
+        return CONTAINER_ACTIONS.contains(action) || action.startsWith("health_status");
+    }
+}
@@ -0,0 +1,235 @@
+package net.plexverse.velocityautoregister;
+
+import com.velocitypowered.api.event.Continuation;
+import com.velocitypowered.api.event.player.KickedFromServerEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import org.slf4j.Logger;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves players off a backend that kicked them or went away, onto a lobby from the live
+ * registry instead of Velocity's static try-list. When a backend crashes, all of its players
+ * are kicked at once; only a bounded number of redirects are in flight at any time and the
+ * rest wait their turn, so the lobbies see a steady stream instead of a reconnect storm.
+ * Each lobby is picked when the player's turn comes, against the load left by the players
+ * redirected before them. Waiting players get their turn strictly in arrival order, and a
+ * player who connects somewhere or leaves gives up their place.
+ */
+final class FailoverRedirector {
+
+    /**
+     * @param cancel run instead of {@code redirect} if the player gives up their place first
+     */
+    private record Waiter(Runnable redirect, Runnable cancel) {
+    }
+
+    private final ServerRegistry registry;
+    private final PlayerLoadTracker loadTracker;
+    private final InitialServerBalancer balancer;
+    private final Logger logger;
+    private final int maxConcurrent;
+    private final long permitTimeoutMillis;
+
+    // Guarded by itself
+    private final Map<UUID, Long> inFlight = new HashMap<>();
+    /** Players waiting for a slot, oldest first, at most one entry each. */
+    private final LinkedHashMap<UUID, Waiter> waiting = new LinkedHashMap<>();
+    private long nextToken;
+
+    FailoverRedirector(ServerRegistry registry, PlayerLoadTracker loadTracker, InitialServerBalancer balancer,
+                       Logger logger, int maxConcurrent, long permitTimeoutMillis) {
+        this.registry = registry;
+        this.loadTracker = loadTracker;
+        this.balancer = balancer;
+        this.logger = logger;
+        this.maxConcurrent = maxConcurrent;
+        this.permitTimeoutMillis = permitTimeoutMillis;
+    }
+
+    /**
+     * Redirects a kicked player to a lobby. Resumes the event once the player's turn has come
+     * and the result is set; Velocity connects them when the event completes.
+     */
+    void onKicked(KickedFromServerEvent event, Continuation continuation) {
+        Player player = event.getPlayer();
+        if (event.kickedDuringServerConnect() && player.getCurrentServer().isPresent()) {
+            // A failed switch; the player is still on their previous server
+            continuation.resume();
+            return;
+        }
+
+        UUID playerId = player.getUniqueId();
+        RegisteredServer kickedFrom = event.getServer();
+        acquire(playerId, true, () -> {
+            try {
+                RegistryEntry target = pickLobby(kickedFrom);
+                if (target == null) {
+                    // Nothing healthy to offer; leave Velocity's own fallback in place
+                    release(playerId);
+                    return;
+                }
+                loadTracker.routed(player, target);
+                // Pass on the backend's kick reason so the player learns why they were moved
+                event.setResult(KickedFromServerEvent.RedirectPlayer.create(target.server(),
+                    event.getServerKickReason().orElse(null)));
+                logger.info("Redirecting {} from {} to {}", player.getUsername(), kickedFrom.getServerInfo().getName(), target.name());
+            } catch (RuntimeException e) {
+                release(playerId);
+                logger.warn("Failed to pick a lobby for {}", player.getUsername(), e);
+            } finally {
+                continuation.resume();
+            }
+        }, continuation::resume);
+    }
+
+    /**
+     * Moves players still connected to servers that were just unregistered (for example a drain
+     * that timed out) to other lobbies. Players already being redirected are left alone.
+     */
+    void evacuate(Collection<RegistryEntry> removed) {
+        for (RegistryEntry entry : removed) {
+            RegisteredServer from = entry.server();
+            Collection<Player> players = from.getPlayersConnected();
+            if (players.isEmpty()) {
+                continue;
+            }
+            logger.info("Moving {} player(s) off unregistered server {}", players.size(), entry.name());
+            for (Player player : players) {
+                UUID playerId = player.getUniqueId();
+                acquire(playerId, false, () -> {
+                    RegistryEntry target = pickLobby(from);
+                    if (target == null) {
+                        release(playerId);
+                        return;
+                    }
+                    loadTracker.routed(player, target);
+                    player.createConnectionRequest(target.server()).connect()
+                        .whenComplete((result, throwable) -> release(playerId));
+                }, () -> { });
+            }
+        }
+    }
+
+    /**
+     * The player connected somewhere or left; frees their redirect slot if they held one, or
+     * drops their place in the queue if they were still waiting.
+     */
+    void released(UUID playerId) {
+        Waiter dropped;
+        synchronized (inFlight) {
+            dropped = waiting.remove(playerId);
+        }
+        if (dropped != null) {
+            dropped.cancel().run();
+        }
+        release(playerId);
+    }
+
+    private RegistryEntry pickLobby(RegisteredServer exclude) {
+        RegistryEntry[] lobbies = registry.snapshot().lobbies();
+        int excluded = -1;
+        for (int i = 0; i < lobbies.length; i++) {
+            if (lobbies[i].server() == exclude) {
+                excluded = i;
+                break;
+            }
+        }
+        if (excluded >= 0) {
+            RegistryEntry[] others = Arrays.copyOf(lobbies, lobbies.length - 1);
+            System.arraycopy(lobbies, excluded + 1, others, excluded, lobbies.length - excluded - 1);
+            lobbies = others;
+        }
+        RegistryEntry target = balancer.select(lobbies);
+        // Balancers fall back to unhealthy lobbies when nothing else is left; a failover should not
+        return target != null && target.isRoutable() ? target : null;
+    }
+
+    /**
+     * Runs {@code redirect} once a slot is free, or queues it behind the players already waiting.
+     * A player who already holds a slot (a redirect that failed and was kicked again) reuses it
+     * when {@code reuse} is set, and is skipped otherwise. A player already waiting keeps their
+     * place; with {@code reuse} the new redirect replaces the queued one.
+     */
+    private void acquire(UUID playerId, boolean reuse, Runnable redirect, Runnable cancel) {
+        long token;
+        Runnable dropped;
+        synchronized (inFlight) {
+            if (inFlight.containsKey(playerId) && !reuse) {
+                dropped = cancel;
+                token = 0;
+            } else if (!inFlight.containsKey(playerId) && inFlight.size() >= maxConcurrent) {
+                Waiter queued = waiting.get(playerId);
+                if (queued != null && !reuse) {
+                    dropped = cancel;
+                } else {
+                    // Replacing an entry keeps its position in the queue
+                    waiting.put(playerId, new Waiter(redirect, cancel));
+                    dropped = queued != null ? queued.cancel() : null;
+                }
+                token = 0;
+            } else {
+                dropped = null;
+                token = ++nextToken;
+                inFlight.put(playerId, token);
+            }
+        }
+        if (dropped != null) {
+            dropped.run();
+        }
+        if (token != 0) {
+            start(playerId, token, redirect);
+        }
+    }
+
+    private void start(UUID playerId, long token, Runnable redirect) {
+        // A redirect whose outcome never reaches us must not hold its slot forever
+        CompletableFuture.delayedExecutor(permitTimeoutMillis, TimeUnit.MILLISECONDS)
+            .execute(() -> release(playerId, token));
+        redirect.run();
+    }
+
+    private void release(UUID playerId) {
+        release(playerId, 0);
+    }
+
+    /**
+     * Frees the player's slot and hands it straight to the player at the head of the queue, so
+     * no one can take it in between.
+     *
+     * @param token only release if the player still holds this slot, or 0 for any
+     */
+    private void release(UUID playerId, long token) {
+        UUID nextPlayer;
+        Waiter next;
+        long nextSlot;
+        synchronized (inFlight) {
+            Long current = inFlight.get(playerId);
+            if (current == null || token != 0 && current != token) {
+                return;
+            }
+            inFlight.remove(playerId);
+            Iterator<Map.Entry<UUID, Waiter>> head = waiting.entrySet().iterator();
+            if (!head.hasNext()) {
+                return;
+            }
+            Map.Entry<UUID, Waiter> first = head.next();
+            head.remove();
+            nextPlayer = first.getKey();
+            next = first.getValue();
+            nextSlot = ++nextToken;
+            inFlight.put(nextPlayer, nextSlot);
+        }
+        // Off this thread, so a long queue cannot recurse through release and start
+        CompletableFuture.runAsync(() -> start(nextPlayer, nextSlot, next.redirect()));
+    }
+}
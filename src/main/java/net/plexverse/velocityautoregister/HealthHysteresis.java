@@ -0,0 +1,162 @@
+package net.plexverse.velocityautoregister;
+
+import org.slf4j.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Damps Docker health check flapping with a small state machine per backend, so a replica
+ * that briefly reports {@code (unhealthy)}, {@code (health: starting)} or a task error is not
+ * unregistered and registered again on every cycle.
+ *
+ * <ul>
+ *   <li>A backend that fails a check is taken out of rotation at once but stays registered.</li>
+ *   <li>It is unregistered after {@code fallThreshold} failed checks in a row, and it gets players
+ *       again after {@code riseThreshold} passed checks in a row. Either streak must also have lasted
+ *       as long as that many scheduled checks would take, so quick rescans after Docker events or
+ *       during a burst cannot accept a change within a second or two.</li>
+ *   <li>Registration only changes once the backend has kept its current membership for the minimum
+ *       dwell time.</li>
+ *   <li>A backend that has never passed a check (still starting) joins on its first pass.</li>
+ * </ul>
+ *
+ * <p>Not thread-safe; only the discovery thread uses it.
+ */
+final class HealthHysteresis {
+
+    enum Verdict {
+        /** Registered and receiving new players. */
+        IN_ROTATION,
+        /** Registered for the players already on it, but no new ones. */
+        OUT_OF_ROTATION,
+        /** Not registered. */
+        EXCLUDED
+    }
+
+    private static final class Tracked {
+        boolean member;
+        boolean passing;
+        boolean everPassed;
+        int failures;
+        int successes;
+        /** When the current run of passed or failed checks began. */
+        long streakStartedNanos;
+        long membershipChangedNanos;
+        long seenInCycle;
+    }
+
+    private final Logger logger;
+    private final int riseThreshold;
+    private final int fallThreshold;
+    private final long minDwellNanos;
+    private final long checkIntervalNanos;
+    private final Map<String, Tracked> byBackendId = new HashMap<>();
+    private long cycle;
+    private int unsettled;
+
+    /**
+     * @param checkIntervalMillis interval of scheduled discovery cycles; a streak of {@code n} checks
+     *                            must span at least {@code n - 1} of these
+     */
+    HealthHysteresis(Logger logger, int riseThreshold, int fallThreshold, long minDwellMillis, long checkIntervalMillis) {
+        this.logger = logger;
+        this.riseThreshold = riseThreshold;
+        this.fallThreshold = fallThreshold;
+        this.minDwellNanos = minDwellMillis * 1_000_000;
+        this.checkIntervalNanos = checkIntervalMillis * 1_000_000;
+    }
+
+    void beginCycle() {
+        cycle++;
+        unsettled = 0;
+    }
+
+    /**
+     * Records one health check result for a running backend.
+     *
+     * @param name server name, for logging
+     */
+    Verdict observe(String backendId, String name, boolean healthy, long nowNanos) {
+        Tracked tracked = byBackendId.get(backendId);
+        if (tracked == null) {
+            tracked = new Tracked();
+            tracked.membershipChangedNanos = nowNanos;
+            byBackendId.put(backendId, tracked);
+        }
+        tracked.seenInCycle = cycle;
+
+        if (healthy) {
+            if (tracked.successes == 0) {
+                tracked.streakStartedNanos = nowNanos;
+            }
+            tracked.failures = 0;
+            tracked.successes++;
+        } else {
+            if (tracked.failures == 0) {
+                tracked.streakStartedNanos = nowNanos;
+            }
+            tracked.successes = 0;
+            tracked.failures++;
+        }
+        boolean risen = healthy && sustained(tracked, tracked.successes, riseThreshold, nowNanos);
+        boolean fallen = !healthy && sustained(tracked, tracked.failures, fallThreshold, nowNanos);
+        boolean dwelled = nowNanos - tracked.membershipChangedNanos >= minDwellNanos;
+
+        if (!tracked.everPassed) {
+            // Still starting up: nothing to damp yet
+            if (healthy) {
+                tracked.everPassed = true;
+                tracked.member = true;
+                tracked.passing = true;
+                tracked.membershipChangedNanos = nowNanos;
+            }
+        } else if (tracked.member) {
+            if (!healthy && tracked.passing) {
+                tracked.passing = false;
+                logger.info("Server {} failed its Docker health check, no new players until it passes {} in a row",
+                    name, riseThreshold);
+            } else if (risen && !tracked.passing) {
+                tracked.passing = true;
+                logger.info("Server {} passed {} Docker health check(s) in a row, back in rotation", name, tracked.successes);
+            }
+            if (!tracked.passing && fallen && dwelled) {
+                tracked.member = false;
+                tracked.membershipChangedNanos = nowNanos;
+                logger.warn("Server {} failed {} Docker health check(s) in a row, unregistering it", name, tracked.failures);
+            }
+        } else if (risen && dwelled) {
+            tracked.member = true;
+            tracked.passing = true;
+            tracked.membershipChangedNanos = nowNanos;
+            logger.info("Server {} passed {} Docker health check(s) in a row, registering it again", name, tracked.successes);
+        }
+
+        // Out of rotation, or on its way back in: decided by later checks
+        if (tracked.member ? !tracked.passing : tracked.everPassed && tracked.successes > 0) {
+            unsettled++;
+        }
+        if (!tracked.member) {
+            return Verdict.EXCLUDED;
+        }
+        return tracked.passing ? Verdict.IN_ROTATION : Verdict.OUT_OF_ROTATION;
+    }
+
+    /** A run of {@code count} checks reaches {@code threshold} once it also spans {@code threshold - 1} scheduled intervals. */
+    private boolean sustained(Tracked tracked, int count, int threshold, long nowNanos) {
+        return count >= threshold && nowNanos - tracked.streakStartedNanos >= (threshold - 1) * checkIntervalNanos;
+    }
+
+    /**
+     * Whether any backend seen this cycle is waiting on further checks before its state
+     * settles, so discovery should keep checking at the burst interval.
+     */
+    boolean unsettled() {
+        return unsettled > 0;
+    }
+
+    /** Forgets backends that were not observed this cycle (stopped, removed or replaced). */
+    void evictUnseen() {
+        byBackendId.values().removeIf(tracked -> tracked.seenInCycle != cycle);
+    }
+}
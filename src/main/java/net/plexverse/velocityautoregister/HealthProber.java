@@ -0,0 +1,79 @@
+package net.plexverse.velocityautoregister;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a Minecraft server-list ping to every registered backend on an interval and records
+ * the round-trip time. A backend that fails several pings in a row, or whose smoothed latency
+ * goes over the threshold, stops receiving new players until it recovers.
+ *
+ * <p>Pings go through {@link com.velocitypowered.api.proxy.server.RegisteredServer#ping()},
+ * which runs on Velocity's non-blocking Netty event loops, so probing thousands of backends
+ * does not tie up a thread per ping.
+ */
+final class HealthProber implements Runnable {
+
+    private final ServerRegistry registry;
+    private final Logger logger;
+    private final PluginConfig.Health config;
+
+    HealthProber(ServerRegistry registry, Logger logger, PluginConfig.Health config) {
+        this.registry = registry;
+        this.logger = logger;
+        this.config = config;
+    }
+
+    @Override
+    public void run() {
+        for (RegistryEntry entry : registry.snapshot().entries().values()) {
+            probe(entry);
+        }
+    }
+
+    private void probe(RegistryEntry entry) {
+        BackendState state = entry.state();
+        if (!state.tryStartProbe()) {
+            // Previous ping has not finished or timed out yet
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            entry.server().ping()
+                .orTimeout(config.getTimeoutMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((ping, throwable) -> {
+                    if (throwable == null) {
+                        long rtt = System.nanoTime() - start;
+                        if (state.probeSucceeded(rtt, config.getLatencyThresholdMillis(), config.getRiseThreshold())) {
+                            logRoutableChange(entry);
+                        }
+                    } else {
+                        logger.debug("Status ping to {} failed: {}", entry.name(), throwable.toString());
+                        if (state.probeFailed(config.getFailureThreshold())) {
+                            logRoutableChange(entry);
+                        }
+                    }
+                });
+        } catch (Exception e) {
+            logger.debug("Could not ping {}: {}", entry.name(), e.toString());
+            if (state.probeFailed(config.getFailureThreshold())) {
+                logRoutableChange(entry);
+            }
+        }
+    }
+
+    private void logRoutableChange(RegistryEntry entry) {
+        BackendState state = entry.state();
+        if (state.routable()) {
+            logger.info("Server {} is routable again (ping {} ms)", entry.name(), Math.round(state.smoothedRttMillis()));
+        } else if (state.consecutiveFailures() > 0) {
+            logger.warn("Server {} is no longer routable ({} failed status pings in a row)", 
+                entry.name(), state.consecutiveFailures());
+        } else {
+            logger.warn("Server {} is no longer routable (ping {} ms over the {} ms threshold)", 
+                entry.name(), Math.round(state.smoothedRttMillis()), config.getLatencyThresholdMillis());
+        }
+    }
+}
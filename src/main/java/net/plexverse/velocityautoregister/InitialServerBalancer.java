@@ -0,0 +1,14 @@
+package net.plexverse.velocityautoregister;
+
+/**
+ * Picks the backend a joining player is sent to. Implementations are called concurrently from
+ * Velocity's event threads and must not block or allocate per call.
+ */
+interface InitialServerBalancer {
+
+    /**
+     * @param candidates backends to choose from; never modified by the balancer
+     * @return the chosen backend, or {@code null} if {@code candidates} is empty
+     */
+    RegistryEntry select(RegistryEntry[] candidates);
+}
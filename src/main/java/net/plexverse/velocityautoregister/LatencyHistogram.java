@@ -0,0 +1,111 @@
+package net.plexverse.velocityautoregister;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket latency histogram. Recording is lock-free, allocation-free and spreads
+ * contention over {@link LongAdder} cells, so it can sit on the join path; quantiles are
+ * approximate (upper bound of the bucket).
+ */
+final class LatencyHistogram {
+
+    /** Bucket bounds for network round trips and Docker calls, 1 ms to 10 s. */
+    static final long[] MILLISECOND_BOUNDS = millis(1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000);
+    /** Bucket bounds for in-memory decisions, 1 microsecond to 10 ms. */
+    static final long[] MICROSECOND_BOUNDS = micros(1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 10000);
+
+    private final long[] boundsNanos;
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    LatencyHistogram() {
+        this(MILLISECOND_BOUNDS);
+    }
+
+    /**
+     * @param boundsNanos ascending bucket upper bounds; an unbounded overflow bucket is added
+     */
+    LatencyHistogram(long[] boundsNanos) {
+        this.boundsNanos = boundsNanos;
+        this.buckets = new LongAdder[boundsNanos.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        int bucket = 0;
+        while (bucket < boundsNanos.length && nanos > boundsNanos[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        count.increment();
+        sumNanos.add(nanos);
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    long sumNanos() {
+        return sumNanos.sum();
+    }
+
+    /** Number of buckets including the overflow bucket. */
+    int bucketCount() {
+        return buckets.length;
+    }
+
+    /** Upper bound of bucket {@code index}, or {@link Long#MAX_VALUE} for the overflow bucket. */
+    long upperBoundNanos(int index) {
+        return index < boundsNanos.length ? boundsNanos[index] : Long.MAX_VALUE;
+    }
+
+    /** Observations in bucket {@code index} (not cumulative). */
+    long bucket(int index) {
+        return buckets[index].sum();
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return upper bound of the bucket holding the quantile, {@link Long#MAX_VALUE} for the
+     *         overflow bucket, or 0 when nothing was recorded
+     */
+    long quantileNanos(double quantile) {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBoundNanos(i);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static long[] millis(long... values) {
+        long[] nanos = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            nanos[i] = values[i] * 1_000_000;
+        }
+        return nanos;
+    }
+
+    private static long[] micros(long... values) {
+        long[] nanos = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            nanos[i] = values[i] * 1_000;
+        }
+        return nanos;
+    }
+}
@@ -0,0 +1,62 @@
+package net.plexverse.velocityautoregister;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps {@link BackendState#players()} up to date from connection events. A player is counted
+ * against a backend as soon as the balancer picks it, so a burst of joins spreads out instead
+ * of all landing on whichever lobby looked emptiest before the first of them connected.
+ */
+final class PlayerLoadTracker {
+
+    private final ServerRegistry registry;
+    /** Where each player is currently counted. */
+    private final Map<UUID, BackendState> countedOn = new ConcurrentHashMap<>();
+
+    PlayerLoadTracker(ServerRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** The balancer sent {@code player} to {@code entry}; count them there until they connect somewhere. */
+    void routed(Player player, RegistryEntry entry) {
+        moveTo(player.getUniqueId(), entry.state());
+    }
+
+    /**
+     * @return the backend the player stopped being counted on, or {@code null}
+     */
+    BackendState connected(Player player, RegisteredServer server) {
+        RegistryEntry entry = registry.snapshot().get(server.getServerInfo().getName());
+        return moveTo(player.getUniqueId(), entry != null && entry.server() == server ? entry.state() : null);
+    }
+
+    /**
+     * @return the backend the player stopped being counted on, or {@code null}
+     */
+    BackendState disconnected(Player player) {
+        BackendState previous = countedOn.remove(player.getUniqueId());
+        if (previous != null) {
+            previous.removePlayer();
+        }
+        return previous;
+    }
+
+    private BackendState moveTo(UUID playerId, BackendState target) {
+        BackendState previous = target != null ? countedOn.put(playerId, target) : countedOn.remove(playerId);
+        if (previous == target) {
+            return null;
+        }
+        if (previous != null) {
+            previous.removePlayer();
+        }
+        if (target != null) {
+            target.addPlayer();
+        }
+        return previous;
+    }
+}
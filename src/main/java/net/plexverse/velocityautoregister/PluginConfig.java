@@ -0,0 +1,414 @@
+package net.plexverse.velocityautoregister;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.annotations.SerializedName;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Plugin configuration, read from {@code config.json} in the plugin data directory.
+ * Missing keys keep the defaults declared here, and a default file is written on first start.
+ */
+final class PluginConfig {
+
+    private static final String FILE_NAME = "config.json";
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    private Discovery discovery = new Discovery();
+    private Routing routing = new Routing();
+    private Health health = new Health();
+    private Persistence persistence = new Persistence();
+    private Metrics metrics = new Metrics();
+
+    public Discovery getDiscovery() {
+        return discovery;
+    }
+
+    public Routing getRouting() {
+        return routing;
+    }
+
+    public Health getHealth() {
+        return health;
+    }
+
+    public Persistence getPersistence() {
+        return persistence;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public static PluginConfig load(Path dataDirectory, Logger logger) {
+        Path file = dataDirectory.resolve(FILE_NAME);
+        PluginConfig config = null;
+
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                config = GSON.fromJson(reader, PluginConfig.class);
+            } catch (Exception e) {
+                logger.error("Failed to read {}, using defaults", file, e);
+                return new PluginConfig();
+            }
+        }
+
+        if (config == null) {
+            config = new PluginConfig();
+        }
+        if (config.discovery == null) {
+            config.discovery = new Discovery();
+        }
+        if (config.routing == null) {
+            config.routing = new Routing();
+        }
+        if (config.health == null) {
+            config.health = new Health();
+        }
+        if (config.persistence == null) {
+            config.persistence = new Persistence();
+        }
+        if (config.metrics == null) {
+            config.metrics = new Metrics();
+        }
+
+        // Write back so newly added keys show up in the file with their defaults
+        try {
+            Files.createDirectories(dataDirectory);
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                GSON.toJson(config, writer);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write {}", file, e);
+        }
+
+        return config;
+    }
+
+    enum DiscoveryMode {
+        /** Subscribe to the Docker events stream and reconcile on change, with a slow full rescan as fallback. */
+        @SerializedName("events")
+        EVENTS,
+        /** Rescan everything on a fixed interval. */
+        @SerializedName("polling")
+        POLLING
+    }
+
+    enum AddressMode {
+        /** The replica's own IP on the shared network, so connections go straight to it. */
+        @SerializedName("ip")
+        IP,
+        /** The replica's own DNS name ({@code <service>.<slot>.<task-id>} in Swarm, the container name in compose). */
+        @SerializedName("dns")
+        DNS,
+        /** The service name. In Swarm this is the VIP, which load-balances over all replicas. */
+        @SerializedName("service")
+        SERVICE
+    }
+
+    static final class Discovery {
+        private List<Endpoint> endpoints = List.of(new Endpoint("local", Endpoint.DEFAULT_HOST, ""));
+        private long endpointTimeoutMillis = 15000;
+        private DiscoveryMode mode = DiscoveryMode.EVENTS;
+        private int pollIntervalSeconds = 10;
+        private int idleIntervalSeconds = 60;
+        private long burstIntervalMillis = 1000;
+        private int burstWindowSeconds = 30;
+        private int errorBackoffMaxSeconds = 120;
+        private int reconcileIntervalSeconds = 60;
+        private long eventDebounceMillis = 250;
+        private int eventReconnectSeconds = 5;
+        private AddressMode addressMode = AddressMode.DNS;
+        private String network = "";
+        private long connectTimeoutMillis = 2000;
+        private long responseTimeoutMillis = 10000;
+        private List<String> stackPrefixes = List.of("local", "docker");
+        private boolean stripReplicaSuffix = false;
+        private String drainLabel = "com.plexverse.drain";
+        private int drainTimeoutSeconds = 300;
+
+        /**
+         * Docker daemons to discover servers on, with blank entries dropped and names made unique
+         * and safe to use in server names. Falls back to the local socket if none are left.
+         */
+        public List<Endpoint> getEndpoints() {
+            List<Endpoint> result = new ArrayList<>();
+            Set<String> names = new HashSet<>();
+            if (endpoints != null) {
+                for (Endpoint endpoint : endpoints) {
+                    if (endpoint == null || endpoint.host == null || endpoint.host.isBlank()) {
+                        continue;
+                    }
+                    String name = endpoint.name == null ? ""
+                        : endpoint.name.trim().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9-]+", "-");
+                    for (int n = result.size() + 1; name.isEmpty() || !names.add(name); n++) {
+                        name = "docker" + n;
+                    }
+                    result.add(new Endpoint(name, endpoint.host.trim(), endpoint.getAdvertisedHost()));
+                }
+            }
+            return result.isEmpty() ? List.of(new Endpoint("local", Endpoint.DEFAULT_HOST, "")) : result;
+        }
+
+        /** Longest one endpoint may take to answer a whole cycle before its previous servers are kept. */
+        public long getEndpointTimeoutMillis() {
+            return Math.max(getResponseTimeoutMillis(), endpointTimeoutMillis);
+        }
+
+        public DiscoveryMode getMode() {
+            return mode == null ? DiscoveryMode.EVENTS : mode;
+        }
+
+        /** Interval once a burst is over; doubles while nothing changes, up to the idle interval. */
+        public int getPollIntervalSeconds() {
+            return Math.max(1, pollIntervalSeconds);
+        }
+
+        /** Longest interval between scheduled cycles in {@code polling} mode. */
+        public int getIdleIntervalSeconds() {
+            return Math.max(getPollIntervalSeconds(), idleIntervalSeconds);
+        }
+
+        /** Interval while changes are still coming in. */
+        public long getBurstIntervalMillis() {
+            return Math.max(100, burstIntervalMillis);
+        }
+
+        /** How long after the last change cycles keep running at the burst interval. */
+        public int getBurstWindowSeconds() {
+            return Math.max(0, burstWindowSeconds);
+        }
+
+        /** Cap on the jittered exponential backoff after failed cycles. */
+        public int getErrorBackoffMaxSeconds() {
+            return Math.max(1, errorBackoffMaxSeconds);
+        }
+
+        public int getReconcileIntervalSeconds() {
+            return Math.max(1, reconcileIntervalSeconds);
+        }
+
+        public long getEventDebounceMillis() {
+            return Math.max(0, eventDebounceMillis);
+        }
+
+        public int getEventReconnectSeconds() {
+            return Math.max(1, eventReconnectSeconds);
+        }
+
+        public AddressMode getAddressMode() {
+            return addressMode == null ? AddressMode.DNS : addressMode;
+        }
+
+        /**
+         * Network whose address is registered in {@code ip} mode. Blank only works for replicas on a
+         * single network besides {@code ingress}; the rest fall back to their DNS name.
+         */
+        public String getNetwork() {
+            return network == null ? "" : network.trim();
+        }
+
+        public long getConnectTimeoutMillis() {
+            return Math.max(100, connectTimeoutMillis);
+        }
+
+        /** Stack names stripped from the front of compose container names without an underscore. */
+        public List<String> getStackPrefixes() {
+            return stackPrefixes == null ? List.of() : stackPrefixes;
+        }
+
+        /**
+         * Whether compose v2 container names ({@code <stack>-<service>-<n>}) lose their {@code -N}
+         * replica suffix, so replicas share a service name. Off by default, since it renames the
+         * servers of existing compose v2 containers.
+         */
+        public boolean isStripReplicaSuffix() {
+            return stripReplicaSuffix;
+        }
+
+        /** Containers with this label (any value but {@code false}) are drained; blank disables it. */
+        public String getDrainLabel() {
+            return drainLabel == null ? "" : drainLabel.trim();
+        }
+
+        /** Longest a draining server stays registered while players are still on it. */
+        public int getDrainTimeoutSeconds() {
+            return Math.max(0, drainTimeoutSeconds);
+        }
+
+        /** Upper bound on a single Docker API list call; does not apply to the events stream. */
+        public long getResponseTimeoutMillis() {
+            return Math.max(100, responseTimeoutMillis);
+        }
+    }
+
+    static final class Endpoint {
+        static final String DEFAULT_HOST = "unix:///var/run/docker.sock";
+
+        private String name;
+        private String host;
+        private String advertisedHost;
+
+        Endpoint() {
+        }
+
+        Endpoint(String name, String host, String advertisedHost) {
+            this.name = name;
+            this.host = host;
+            this.advertisedHost = advertisedHost;
+        }
+
+        /** Short name used in logs and, with several endpoints, in server names and backend IDs. */
+        public String getName() {
+            return name;
+        }
+
+        /** Docker host URI, e.g. {@code unix:///var/run/docker.sock} or {@code tcp://10.0.0.2:2375}. */
+        public String getHost() {
+            return host;
+        }
+
+        /**
+         * Host the proxy reaches this daemon's compose containers at, through their published
+         * game port; blank registers container addresses as on the local daemon.
+         */
+        public String getAdvertisedHost() {
+            return advertisedHost == null ? "" : advertisedHost.trim();
+        }
+    }
+
+    static final class Routing {
+        private BalancingStrategy strategy = BalancingStrategy.POWER_OF_TWO;
+        private String capacityLabel = "com.plexverse.capacity";
+        private int defaultCapacity = 100;
+        private boolean failover = true;
+        private int failoverConcurrency = 25;
+        private long failoverTimeoutMillis = 10000;
+
+        public BalancingStrategy getStrategy() {
+            return strategy == null ? BalancingStrategy.POWER_OF_TWO : strategy;
+        }
+
+        public String getCapacityLabel() {
+            return capacityLabel;
+        }
+
+        public int getDefaultCapacity() {
+            return Math.max(1, defaultCapacity);
+        }
+
+        /** Redirect kicked players to a lobby from the registry instead of Velocity's try-list. */
+        public boolean isFailover() {
+            return failover;
+        }
+
+        /** Redirects allowed in flight at once; the rest queue. */
+        public int getFailoverConcurrency() {
+            return Math.max(1, failoverConcurrency);
+        }
+
+        /** A redirect slot is freed after this long even if the outcome was never seen. */
+        public long getFailoverTimeoutMillis() {
+            return Math.max(1000, failoverTimeoutMillis);
+        }
+    }
+
+    static final class Health {
+        private boolean enabled = true;
+        private int intervalSeconds = 5;
+        private long timeoutMillis = 2000;
+        private int failureThreshold = 3;
+        private long latencyThresholdMillis = 500;
+        private int riseThreshold = 2;
+        private int dockerFailureThreshold = 2;
+        private long minDwellSeconds = 10;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public int getIntervalSeconds() {
+            return Math.max(1, intervalSeconds);
+        }
+
+        public long getTimeoutMillis() {
+            return Math.max(100, timeoutMillis);
+        }
+
+        /** Failed pings in a row before a backend stops receiving new players. */
+        public int getFailureThreshold() {
+            return Math.max(1, failureThreshold);
+        }
+
+        /** Smoothed ping time above which a backend stops receiving new players. */
+        public long getLatencyThresholdMillis() {
+            return Math.max(1, latencyThresholdMillis);
+        }
+
+        /**
+         * Passed pings or Docker health checks in a row before a backend gets new players again. For
+         * Docker health checks the streak must also last this many poll intervals minus one.
+         */
+        public int getRiseThreshold() {
+            return Math.max(1, riseThreshold);
+        }
+
+        /**
+         * Failed Docker health checks in a row before a backend is unregistered. The streak must also
+         * last this many poll intervals minus one, however often discovery rescans in between.
+         */
+        public int getDockerFailureThreshold() {
+            return Math.max(1, dockerFailureThreshold);
+        }
+
+        /** How long a backend keeps its registration before a Docker health check can change it. */
+        public long getMinDwellSeconds() {
+            return Math.max(0, minDwellSeconds);
+        }
+    }
+
+    static final class Persistence {
+        private boolean enabled = true;
+        private long maxAgeSeconds = 3600;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /** A saved registry older than this is ignored at startup. */
+        public long getMaxAgeSeconds() {
+            return Math.max(0, maxAgeSeconds);
+        }
+    }
+
+    static final class Metrics {
+        private boolean httpEnabled = false;
+        private String httpHost = "127.0.0.1";
+        private int httpPort = 9225;
+
+        /** Serve Prometheus metrics at {@code /metrics}; the stats command works either way. */
+        public boolean isHttpEnabled() {
+            return httpEnabled;
+        }
+
+        public String getHttpHost() {
+            return httpHost == null || httpHost.isBlank() ? "127.0.0.1" : httpHost.trim();
+        }
+
+        public int getHttpPort() {
+            return httpPort;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package net.plexverse.velocityautoregister;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for discovery, the Docker API and join routing. Everything
+ * is a {@link LongAdder} or {@link LatencyHistogram}, so recording never locks or allocates;
+ * derived values such as registry size per project are computed when metrics are read.
+ */
+final class PluginMetrics {
+
+    /** Docker API call statistics for one API path on one Docker endpoint. */
+    static final class DockerRequestMetrics {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        long requests() {
+            return requests.sum();
+        }
+
+        long errors() {
+            return errors.sum();
+        }
+
+        LatencyHistogram latency() {
+            return latency;
+        }
+    }
+
+    private final LongAdder cycles = new LongAdder();
+    private final LongAdder cycleFailures = new LongAdder();
+    private final LatencyHistogram cycleDuration = new LatencyHistogram();
+    private volatile long lastSuccessfulCycleMillis;
+    private volatile long nextCycleDelayMillis;
+
+    /** Docker endpoint name to API path to statistics; two levels so recording needs no key object. */
+    private final Map<String, Map<String, DockerRequestMetrics>> dockerRequests = new ConcurrentHashMap<>();
+
+    private final LongAdder serversAdded = new LongAdder();
+    private final LongAdder serversUpdated = new LongAdder();
+    private final LongAdder serversRemoved = new LongAdder();
+
+    private final LatencyHistogram routeDecision = new LatencyHistogram(LatencyHistogram.MICROSECOND_BOUNDS);
+    private final LongAdder routeFailures = new LongAdder();
+
+    void cycleSucceeded(long nanos) {
+        cycles.increment();
+        cycleDuration.record(nanos);
+        lastSuccessfulCycleMillis = System.currentTimeMillis();
+    }
+
+    void cycleFailed(long nanos) {
+        cycles.increment();
+        cycleFailures.increment();
+        cycleDuration.record(nanos);
+    }
+
+    void nextCycleScheduled(long delayMillis) {
+        nextCycleDelayMillis = delayMillis;
+    }
+
+    void dockerRequest(String endpoint, String path, long nanos, boolean success) {
+        DockerRequestMetrics metrics = dockerRequests.computeIfAbsent(endpoint, key -> new ConcurrentHashMap<>())
+            .computeIfAbsent(path, key -> new DockerRequestMetrics());
+        metrics.requests.increment();
+        if (!success) {
+            metrics.errors.increment();
+        }
+        metrics.latency.record(nanos);
+    }
+
+    void registryChanged(int added, int updated, int removed) {
+        serversAdded.add(added);
+        serversUpdated.add(updated);
+        serversRemoved.add(removed);
+    }
+
+    /**
+     * @param target the chosen backend, or {@code null} if no server was available
+     */
+    void routed(RegistryEntry target, long nanos) {
+        routeDecision.record(nanos);
+        if (target != null) {
+            target.state().selected();
+        } else {
+            routeFailures.increment();
+        }
+    }
+
+    long cycles() {
+        return cycles.sum();
+    }
+
+    long cycleFailures() {
+        return cycleFailures.sum();
+    }
+
+    LatencyHistogram cycleDuration() {
+        return cycleDuration;
+    }
+
+    /** Wall-clock time of the last successful discovery cycle, or 0 if there has not been one. */
+    long lastSuccessfulCycleMillis() {
+        return lastSuccessfulCycleMillis;
+    }
+
+    /** Delay chosen for the next scheduled discovery cycle. */
+    long nextCycleDelayMillis() {
+        return nextCycleDelayMillis;
+    }
+
+    /** Docker endpoint name to API path to statistics. */
+    Map<String, Map<String, DockerRequestMetrics>> dockerRequests() {
+        return dockerRequests;
+    }
+
+    long serversAdded() {
+        return serversAdded.sum();
+    }
+
+    long serversUpdated() {
+        return serversUpdated.sum();
+    }
+
+    long serversRemoved() {
+        return serversRemoved.sum();
+    }
+
+    LatencyHistogram routeDecision() {
+        return routeDecision;
+    }
+
+    long routeFailures() {
+        return routeFailures.sum();
+    }
+}
@@ -0,0 +1,203 @@
+package net.plexverse.velocityautoregister;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Renders {@link PluginMetrics} and the current registry in the Prometheus text exposition
+ * format, and optionally serves it on a local HTTP listener at {@code /metrics}.
+ */
+final class PrometheusExporter {
+
+    private static final String PREFIX = "velocity_autoregister_";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final PluginMetrics metrics;
+    private final ServerRegistry registry;
+    private final Logger logger;
+    private HttpServer httpServer;
+    private ExecutorService httpExecutor;
+
+    PrometheusExporter(PluginMetrics metrics, ServerRegistry registry, Logger logger) {
+        this.metrics = metrics;
+        this.registry = registry;
+        this.logger = logger;
+    }
+
+    void start(String host, int port) throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+        httpExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "velocity-auto-register-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpServer.setExecutor(httpExecutor);
+        httpServer.createContext("/metrics", this::handle);
+        httpServer.start();
+        logger.info("Serving Prometheus metrics on http://{}:{}/metrics", host, port);
+    }
+
+    void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+        if (httpExecutor != null) {
+            httpExecutor.shutdownNow();
+            httpExecutor = null;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    String render() {
+        StringBuilder out = new StringBuilder(4096);
+        RegistrySnapshot snapshot = registry.snapshot();
+
+        // Discovery
+        counter(out, "discovery_cycles_total", "Discovery cycles run, including failed ones.", metrics.cycles());
+        counter(out, "discovery_cycle_failures_total", "Discovery cycles that failed.", metrics.cycleFailures());
+        header(out, "discovery_cycle_seconds", "Duration of discovery cycles.", "histogram");
+        histogram(out, "discovery_cycle_seconds", "", metrics.cycleDuration());
+        long lastSuccess = metrics.lastSuccessfulCycleMillis();
+        gauge(out, "discovery_last_success_age_seconds", 
+            "Seconds since the last successful discovery cycle, -1 if none succeeded yet.", 
+            lastSuccess == 0 ? -1 : (System.currentTimeMillis() - lastSuccess) / 1000.0);
+        gauge(out, "discovery_interval_seconds", "Delay chosen for the next scheduled discovery cycle.", 
+            metrics.nextCycleDelayMillis() / 1000.0);
+
+        // Docker API
+        Map<String, PluginMetrics.DockerRequestMetrics> requests = new TreeMap<>();
+        metrics.dockerRequests().forEach((endpoint, byPath) -> byPath.forEach((path, stats) ->
+            requests.put(label("endpoint", endpoint) + "," + label("path", path), stats)));
+        header(out, "docker_requests_total", "Docker API requests by Docker endpoint and API path.", "counter");
+        requests.forEach((labels, stats) -> sample(out, "docker_requests_total", labels, stats.requests()));
+        header(out, "docker_request_errors_total", "Failed Docker API requests by Docker endpoint and API path.", "counter");
+        requests.forEach((labels, stats) -> sample(out, "docker_request_errors_total", labels, stats.errors()));
+        header(out, "docker_request_seconds", "Docker API request latency by Docker endpoint and API path.", "histogram");
+        requests.forEach((labels, stats) -> histogram(out, "docker_request_seconds", labels, stats.latency()));
+
+        // Registry
+        gauge(out, "registry_version", "Number of snapshots published so far.", snapshot.version());
+        Map<String, Integer> byProject = new TreeMap<>();
+        for (RegistryEntry entry : snapshot.sorted()) {
+            byProject.merge(entry.projectId() != null ? entry.projectId() : "", 1, Integer::sum);
+        }
+        header(out, "registry_servers", "Registered servers by project ID.", "gauge");
+        byProject.forEach((project, count) -> sample(out, "registry_servers", label("project", project), count));
+        counter(out, "servers_registered_total", "Servers registered under a new name.", metrics.serversAdded());
+        counter(out, "servers_updated_total", "Servers re-registered for a new backend or address.", metrics.serversUpdated());
+        counter(out, "servers_unregistered_total", "Servers unregistered.", metrics.serversRemoved());
+
+        // Routing
+        header(out, "route_decision_seconds", "Time spent choosing an initial server for a joining player.", "histogram");
+        histogram(out, "route_decision_seconds", "", metrics.routeDecision());
+        counter(out, "route_failures_total", "Joining players for whom no server was available.", metrics.routeFailures());
+
+        // Backends
+        header(out, "backend_selections_total", "Joining players sent to each server.", "counter");
+        for (RegistryEntry entry : snapshot.sorted()) {
+            sample(out, "backend_selections_total", label("server", entry.name()), entry.state().selections());
+        }
+        header(out, "backend_players", "Players on each server, including those still connecting.", "gauge");
+        for (RegistryEntry entry : snapshot.sorted()) {
+            sample(out, "backend_players", label("server", entry.name()), entry.state().players());
+        }
+        header(out, "backend_routable", "1 if a server receives new players, 0 if it is draining or failing health checks.", "gauge");
+        for (RegistryEntry entry : snapshot.sorted()) {
+            sample(out, "backend_routable", label("server", entry.name()), entry.isRoutable() ? 1 : 0);
+        }
+        header(out, "backend_draining", "1 if a server is shutting down and only keeps its current players.", "gauge");
+        for (RegistryEntry entry : snapshot.sorted()) {
+            sample(out, "backend_draining", label("server", entry.name()), entry.state().draining() ? 1 : 0);
+        }
+        header(out, "backend_ping_smoothed_seconds", "Smoothed status ping round-trip time of each server.", "gauge");
+        for (RegistryEntry entry : snapshot.sorted()) {
+            double rtt = entry.state().smoothedRttMillis();
+            if (rtt >= 0) {
+                sample(out, "backend_ping_smoothed_seconds", label("server", entry.name()), rtt / 1000.0);
+            }
+        }
+        header(out, "backend_ping_seconds", "Status ping round-trip times of each server.", "histogram");
+        for (RegistryEntry entry : snapshot.sorted()) {
+            histogram(out, "backend_ping_seconds", label("server", entry.name()), entry.state().pingLatency());
+        }
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "counter");
+        sample(out, name, "", value);
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        header(out, name, help, "gauge");
+        sample(out, name, "", value);
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * @param labels rendered label pairs without braces, e.g. {@code path="/tasks"}, or empty
+     */
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        String separator = labels.isEmpty() ? "" : ",";
+        long cumulative = 0;
+        for (int i = 0; i < histogram.bucketCount(); i++) {
+            cumulative += histogram.bucket(i);
+            long bound = histogram.upperBoundNanos(i);
+            String le = bound == Long.MAX_VALUE ? "+Inf" : Double.toString(bound / 1e9);
+            sample(out, name + "_bucket", labels + separator + "le=\"" + le + "\"", cumulative);
+        }
+        sample(out, name + "_sum", labels, histogram.sumNanos() / 1e9);
+        // Count from the buckets so it always matches the +Inf bucket
+        sample(out, name + "_count", labels, cumulative);
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        appendName(out, name, labels).append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        appendName(out, name, labels).append(' ').append(value).append('\n');
+    }
+
+    private static StringBuilder appendName(StringBuilder out, String name, String labels) {
+        out.append(PREFIX).append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        return out;
+    }
+
+    private static String label(String name, String value) {
+        String escaped = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return name + "=\"" + escaped + "\"";
+    }
+}
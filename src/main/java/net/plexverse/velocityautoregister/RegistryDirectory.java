@@ -0,0 +1,116 @@
+package net.plexverse.velocityautoregister;
+
+import net.plexverse.velocityautoregister.api.DiscoveredServer;
+import net.plexverse.velocityautoregister.api.RegistryChange;
+import net.plexverse.velocityautoregister.api.RegistryListener;
+import net.plexverse.velocityautoregister.api.ServerDirectory;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The {@link ServerDirectory} handed to other plugins. Queries go to the current
+ * {@link RegistrySnapshot} and its lazily built {@link ServerIndex}; listeners are told about
+ * each published change as a delta against the previous snapshot.
+ */
+final class RegistryDirectory implements ServerDirectory {
+
+    private final ServerRegistry registry;
+    private final Logger logger;
+    private final List<RegistryListener> listeners = new CopyOnWriteArrayList<>();
+
+    RegistryDirectory(ServerRegistry registry, Logger logger) {
+        this.registry = registry;
+        this.logger = logger;
+    }
+
+    @Override
+    public long version() {
+        return registry.snapshot().version();
+    }
+
+    @Override
+    public Optional<DiscoveredServer> server(String name) {
+        return name == null ? Optional.empty() : Optional.ofNullable(registry.snapshot().get(name));
+    }
+
+    @Override
+    public List<DiscoveredServer> all() {
+        return registry.snapshot().index().all();
+    }
+
+    @Override
+    public List<DiscoveredServer> byProject(String projectId) {
+        return projectId == null ? List.of() : registry.snapshot().index().byProject(projectId);
+    }
+
+    @Override
+    public List<DiscoveredServer> byService(String serviceName) {
+        return serviceName == null ? List.of() : registry.snapshot().index().byService(serviceName);
+    }
+
+    @Override
+    public List<DiscoveredServer> byLabel(String key, String value) {
+        return key == null || value == null ? List.of() : registry.snapshot().index().byLabel(key, value);
+    }
+
+    @Override
+    public List<DiscoveredServer> routableByProject(String projectId) {
+        // Routability changes between snapshots, so it is filtered per call rather than indexed
+        return byProject(projectId).stream().filter(DiscoveredServer::isRoutable).toList();
+    }
+
+    @Override
+    public void addListener(RegistryListener listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    @Override
+    public void removeListener(RegistryListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Tells listeners what changed between two published snapshots. Called on the discovery
+     * thread right after {@link ServerRegistry#publish}.
+     */
+    void published(RegistrySnapshot previous, RegistrySnapshot current) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+
+        List<DiscoveredServer> added = new ArrayList<>();
+        List<DiscoveredServer> updated = new ArrayList<>();
+        List<DiscoveredServer> removed = new ArrayList<>();
+        for (RegistryEntry entry : current.sorted()) {
+            RegistryEntry before = previous.get(entry.name());
+            if (before == null) {
+                added.add(entry);
+            } else if (before != entry || entry.state().draining() != previous.wasDraining(entry.name())) {
+                // Unchanged servers keep their entry instance across snapshots; draining is runtime state
+                updated.add(entry);
+            }
+        }
+        for (RegistryEntry entry : previous.sorted()) {
+            if (current.get(entry.name()) == null) {
+                removed.add(entry);
+            }
+        }
+
+        RegistryChange change = new RegistryChange(current.version(), added, updated, removed);
+        if (change.isEmpty()) {
+            return;
+        }
+        for (RegistryListener listener : listeners) {
+            try {
+                listener.onChange(change);
+            } catch (RuntimeException e) {
+                logger.warn("Registry listener {} failed", listener.getClass().getName(), e);
+            }
+        }
+    }
+}
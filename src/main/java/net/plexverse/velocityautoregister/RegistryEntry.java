@@ -0,0 +1,56 @@
+package net.plexverse.velocityautoregister;
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import net.plexverse.velocityautoregister.api.DiscoveredServer;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+
+/**
+ * One auto-registered backend as seen by the last discovery cycle.
+ *
+ * @param name        Velocity server name, e.g. {@code micro-battles-2}
+ * @param backendId   Swarm task ID or container ID currently behind the name
+ * @param serviceName service the replica belongs to, e.g. {@code micro-battles}
+ * @param replica     1-based replica number within the service
+ * @param capacity    relative capacity from the capacity label, used by the weighted balancer
+ * @param labels      container labels, unmodifiable
+ * @param healthy     passing its Docker health checks as damped by {@link HealthHysteresis}
+ * @param server      the handle returned by {@link com.velocitypowered.api.proxy.ProxyServer#registerServer}
+ * @param state       runtime state shared by every snapshot that contains this server
+ */
+record RegistryEntry(
+    String name,
+    String backendId,
+    InetSocketAddress address,
+    String projectId,
+    String serviceName,
+    int replica,
+    int capacity,
+    Map<String, String> labels,
+    boolean healthy,
+    RegisteredServer server,
+    BackendState state
+) implements DiscoveredServer {
+
+    /** Whether the service is a lobby; the server name also carries the endpoint, which must not count. */
+    boolean isLobby() {
+        return serviceName.toLowerCase().contains("lobby");
+    }
+
+    /** Whether new players may be sent here: not draining, and passing both Docker health checks and status pings. */
+    @Override
+    public boolean isRoutable() {
+        return healthy && state.routable() && !state.draining();
+    }
+
+    @Override
+    public boolean isDraining() {
+        return state.draining();
+    }
+
+    @Override
+    public int players() {
+        return state.players();
+    }
+}
@@ -0,0 +1,228 @@
+package net.plexverse.velocityautoregister;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import org.slf4j.Logger;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Applies the result of a discovery cycle to Velocity as a minimal diff against the previous
+ * snapshot. A server whose backend and address did not change is left untouched; one whose
+ * task/container was replaced or whose address moved is re-registered under the same name;
+ * only names that disappeared are unregistered.
+ *
+ * <p>A registered backend that is still running but shutting down is drained instead: it keeps
+ * its name and players, gets no new ones, and is unregistered once it is empty or the drain
+ * timeout passes. A replacement for the same name waits until then.
+ */
+final class RegistryReconciler {
+
+    private final ProxyServer server;
+    private final Logger logger;
+    private final PluginMetrics metrics;
+    private final long drainTimeoutNanos;
+
+    RegistryReconciler(ProxyServer server, Logger logger, PluginMetrics metrics, long drainTimeoutMillis) {
+        this.server = server;
+        this.logger = logger;
+        this.metrics = metrics;
+        this.drainTimeoutNanos = drainTimeoutMillis * 1_000_000;
+    }
+
+    /**
+     * @return the registry contents after applying the diff, keyed by server name
+     */
+    Map<String, RegistryEntry> reconcile(RegistrySnapshot previous, List<DiscoveredBackend> discovered) {
+        return reconcile(previous, discovered, entry -> false);
+    }
+
+    /**
+     * @param retain registered servers to keep exactly as they are, because the Docker endpoint
+     *               they came from could not be scanned this cycle
+     * @return the registry contents after applying the diff, keyed by server name
+     */
+    Map<String, RegistryEntry> reconcile(RegistrySnapshot previous, List<DiscoveredBackend> discovered,
+                                         Predicate<RegistryEntry> retain) {
+        Map<String, DiscoveredBackend> desired = new HashMap<>();
+        Set<String> drainingIds = new HashSet<>();
+        for (DiscoveredBackend backend : discovered) {
+            if (backend.draining()) {
+                // Matched to registered servers by backend ID; a draining backend is never newly registered
+                drainingIds.add(backend.id());
+                continue;
+            }
+            DiscoveredBackend clash = desired.putIfAbsent(backend.name(), backend);
+            if (clash != null) {
+                logger.warn("Backends {} and {} both map to server {}, ignoring the second", 
+                    clash.id(), backend.id(), backend.name());
+            }
+        }
+
+        Map<String, RegistryEntry> next = new HashMap<>();
+        int added = 0;
+        int updated = 0;
+        int removed = 0;
+        int draining = 0;
+        long now = System.nanoTime();
+
+        // Existing servers: keep, drain, update in place, or remove
+        for (RegistryEntry entry : previous.entries().values()) {
+            if (retain.test(entry)) {
+                next.put(entry.name(), entry);
+                desired.remove(entry.name());
+                continue;
+            }
+            BackendState state = entry.state();
+            if (drainingIds.contains(entry.backendId())) {
+                if (!state.draining()) {
+                    state.startDraining(now);
+                    logger.info("Draining server {}: no new players, {} still connected", entry.name(), state.players());
+                }
+                int players = state.players();
+                if (players == 0 || now - state.drainStartedNanos() >= drainTimeoutNanos) {
+                    unregister(entry);
+                    removed++;
+                    logger.info("Unregistered drained server: {} ({})", entry.name(), 
+                        players == 0 ? "no players left" : "drain timed out with " + players + " player(s)");
+                    // A replacement under the same name is registered with the new servers below
+                    continue;
+                }
+                if (desired.remove(entry.name()) != null) {
+                    logger.debug("Server {} is draining, its replacement is registered once it is done", entry.name());
+                }
+                next.put(entry.name(), entry);
+                draining++;
+                continue;
+            }
+
+            DiscoveredBackend backend = desired.remove(entry.name());
+            if (backend == null) {
+                unregister(entry);
+                removed++;
+                logger.info("Unregistered server: {} (no longer running)", entry.name());
+                continue;
+            }
+
+            boolean sameBackend = backend.id().equals(entry.backendId());
+            if (sameBackend && state.draining()) {
+                state.stopDraining();
+                logger.info("Server {} is no longer draining", entry.name());
+            }
+            if (sameBackend && sameAddress(entry, backend)) {
+                next.put(entry.name(), sameMetadata(entry, backend) ? entry : withMetadata(entry, backend));
+                continue;
+            }
+
+            // Same name, but a new task/container or a new address: swap the registration
+            unregister(entry);
+            RegisteredServer registered = register(backend);
+            next.put(backend.name(), newEntry(backend, registered, sameBackend ? entry.state() : new BackendState()));
+            updated++;
+            logger.info("Updated server: {} now at {}:{} ({} -> {})", backend.name(), backend.host(), backend.port(),
+                shortId(entry.backendId()), shortId(backend.id()));
+        }
+
+        // New servers
+        for (DiscoveredBackend backend : desired.values()) {
+            if (server.getServer(backend.name()).isPresent()) {
+                logger.debug("Server {} is registered outside of auto-registration, leaving it alone", backend.name());
+                continue;
+            }
+            RegisteredServer registered = register(backend);
+            next.put(backend.name(), newEntry(backend, registered, new BackendState()));
+            added++;
+            logger.info("Registered healthy server: {} at {}:{} (internal network, replica {}, service: {})",
+                backend.name(), backend.host(), backend.port(), backend.replica(), backend.serviceName());
+        }
+
+        if (added > 0 || updated > 0 || removed > 0) {
+            metrics.registryChanged(added, updated, removed);
+            logger.info("Reconciled registry: {} added, {} updated, {} removed, {} draining, {} total", 
+                added, updated, removed, draining, next.size());
+        }
+        return next;
+    }
+
+    /**
+     * Registers servers saved by a previous proxy run so players can be routed before the first
+     * discovery finishes. The first {@link #reconcile} then keeps the ones whose backend is still
+     * running and unregisters the rest.
+     */
+    Map<String, RegistryEntry> restore(List<RegistryStore.StoredEntry> stored) {
+        Map<String, RegistryEntry> restored = new HashMap<>();
+        for (RegistryStore.StoredEntry saved : stored) {
+            if (restored.containsKey(saved.name()) || server.getServer(saved.name()).isPresent()) {
+                continue;
+            }
+            // Unresolved, so a stale DNS name cannot hold up proxy startup; Velocity resolves it on connect
+            InetSocketAddress address = InetSocketAddress.createUnresolved(saved.host(), saved.port());
+            RegisteredServer registered;
+            try {
+                registered = server.registerServer(new ServerInfo(saved.name(), address));
+            } catch (IllegalArgumentException e) {
+                logger.debug("Could not restore server {}: {}", saved.name(), e.getMessage());
+                continue;
+            }
+            BackendState state = new BackendState();
+            if (!saved.routable()) {
+                state.markUnroutable();
+            }
+            restored.put(saved.name(), new RegistryEntry(saved.name(), saved.backendId(), address, saved.projectId(),
+                saved.serviceName(), saved.replica(), saved.capacity(), Map.copyOf(saved.labels()), true, registered, state));
+        }
+        return restored;
+    }
+
+    private RegisteredServer register(DiscoveredBackend backend) {
+        // Unresolved, like Velocity's own configured servers: a DNS name is looked up on connect,
+        // not on the discovery thread, and follows the replica if its IP changes
+        InetSocketAddress address = InetSocketAddress.createUnresolved(backend.host(), backend.port());
+        return server.registerServer(new ServerInfo(backend.name(), address));
+    }
+
+    private void unregister(RegistryEntry entry) {
+        try {
+            server.unregisterServer(entry.server().getServerInfo());
+        } catch (IllegalArgumentException e) {
+            // Already unregistered or replaced by someone else
+            logger.debug("Server {} was not registered as expected: {}", entry.name(), e.getMessage());
+        }
+    }
+
+    private static boolean sameAddress(RegistryEntry entry, DiscoveredBackend backend) {
+        return entry.address().getPort() == backend.port() && entry.address().getHostString().equals(backend.host());
+    }
+
+    private static boolean sameMetadata(RegistryEntry entry, DiscoveredBackend backend) {
+        return entry.replica() == backend.replica()
+            && entry.capacity() == backend.capacity()
+            && entry.serviceName().equals(backend.serviceName())
+            && Objects.equals(entry.projectId(), backend.projectId())
+            && entry.labels().equals(backend.labels())
+            && entry.healthy() == backend.healthy();
+    }
+
+    private static RegistryEntry withMetadata(RegistryEntry entry, DiscoveredBackend backend) {
+        return new RegistryEntry(entry.name(), entry.backendId(), entry.address(), backend.projectId(),
+            backend.serviceName(), backend.replica(), backend.capacity(), backend.labels(), backend.healthy(), entry.server(),
+            entry.state());
+    }
+
+    private static RegistryEntry newEntry(DiscoveredBackend backend, RegisteredServer registered, BackendState state) {
+        return new RegistryEntry(backend.name(), backend.id(), registered.getServerInfo().getAddress(), backend.projectId(),
+            backend.serviceName(), backend.replica(), backend.capacity(), backend.labels(), backend.healthy(), registered, state);
+    }
+
+    private static String shortId(String id) {
+        return id != null && id.length() > 12 ? id.substring(0, 12) : id;
+    }
+}
@@ -0,0 +1,109 @@
+package net.plexverse.velocityautoregister;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable view of the registry at one point in time. Everything the join path needs is
+ * computed once when the snapshot is built, so readers never filter, sort or allocate.
+ */
+final class RegistrySnapshot {
+
+    private static final RegistryEntry[] NO_ENTRIES = new RegistryEntry[0];
+
+    static final RegistrySnapshot EMPTY = new RegistrySnapshot(0, Collections.emptyMap());
+
+    private final long version;
+    private final Map<String, RegistryEntry> byName;
+    private final RegistryEntry[] sorted;
+    private final RegistryEntry[] lobbies;
+    private final RegistryEntry firstByName;
+    /** Names that were draining when this snapshot was built; draining is runtime state and can change after. */
+    private final Set<String> draining;
+    private volatile ServerIndex index;
+
+    RegistrySnapshot(long version, Map<String, RegistryEntry> entries) {
+        this.version = version;
+        this.byName = Map.copyOf(entries);
+
+        RegistryEntry[] sorted = byName.values().toArray(NO_ENTRIES);
+        Arrays.sort(sorted, Comparator.comparing(RegistryEntry::name));
+        this.sorted = sorted;
+        // Draining servers stay registered for their players but are never offered to new ones
+        this.lobbies = Arrays.stream(sorted)
+            .filter(entry -> entry.isLobby() && !entry.state().draining())
+            .toArray(RegistryEntry[]::new);
+        this.firstByName = Arrays.stream(sorted).filter(entry -> !entry.state().draining()).findFirst().orElse(null);
+        this.draining = Arrays.stream(sorted)
+            .filter(entry -> entry.state().draining())
+            .map(RegistryEntry::name)
+            .collect(Collectors.toUnmodifiableSet());
+    }
+
+    long version() {
+        return version;
+    }
+
+    int size() {
+        return byName.size();
+    }
+
+    RegistryEntry get(String name) {
+        return byName.get(name);
+    }
+
+    /** All entries keyed by server name. The map is unmodifiable. */
+    Map<String, RegistryEntry> entries() {
+        return byName;
+    }
+
+    /** All entries sorted by name. Callers must not modify the array. */
+    RegistryEntry[] sorted() {
+        return sorted;
+    }
+
+    /** Lobby entries that are not draining, sorted by name. Callers must not modify the array. */
+    RegistryEntry[] lobbies() {
+        return lobbies;
+    }
+
+    /** Whether the named server was draining when this snapshot was built. */
+    boolean wasDraining(String name) {
+        return draining.contains(name);
+    }
+
+    /**
+     * Whether any server started or stopped draining since this snapshot was built, which
+     * makes its {@link #lobbies()} and {@link #firstByName()} stale.
+     */
+    boolean drainingChanged() {
+        for (RegistryEntry entry : sorted) {
+            if (entry.state().draining() != draining.contains(entry.name())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lookup tables for the public API, built on first use. Two threads may race to build
+     * them; both get an equivalent index and one of them is kept.
+     */
+    ServerIndex index() {
+        ServerIndex index = this.index;
+        if (index == null) {
+            index = new ServerIndex(this);
+            this.index = index;
+        }
+        return index;
+    }
+
+    /** The alphabetically first entry that is not draining, or {@code null} if there is none. */
+    RegistryEntry firstByName() {
+        return firstByName;
+    }
+}
@@ -0,0 +1,109 @@
+package net.plexverse.velocityautoregister;
+
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves the last known registry to the plugin data directory so a restarted proxy can route
+ * players before its first Docker scan completes. The file is replaced atomically, so a crash
+ * mid-write leaves the previous copy intact.
+ */
+final class RegistryStore {
+
+    private static final String FILE_NAME = "registry-cache.json";
+    private static final int FORMAT_VERSION = 1;
+    private static final Gson GSON = new Gson();
+
+    private final Path file;
+    private final Logger logger;
+
+    RegistryStore(Path dataDirectory, Logger logger) {
+        this.file = dataDirectory.resolve(FILE_NAME);
+        this.logger = logger;
+    }
+
+    /**
+     * One saved server. {@code host} is kept as a string so restoring never blocks on DNS.
+     */
+    record StoredEntry(String name, String backendId, String host, int port, String projectId,
+                       String serviceName, int replica, int capacity, Map<String, String> labels, boolean routable) {
+    }
+
+    private record StoredRegistry(int format, long savedAtMillis, List<StoredEntry> servers) {
+    }
+
+    /**
+     * @return the saved servers, or an empty list if there is no usable file or it is older than {@code maxAgeSeconds}
+     */
+    List<StoredEntry> load(long maxAgeSeconds) {
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+
+        StoredRegistry stored;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            stored = GSON.fromJson(reader, StoredRegistry.class);
+        } catch (Exception e) {
+            logger.warn("Ignoring unreadable registry cache {}: {}", file, e.getMessage());
+            return List.of();
+        }
+
+        if (stored == null || stored.format() != FORMAT_VERSION || stored.servers() == null) {
+            return List.of();
+        }
+        long ageSeconds = (System.currentTimeMillis() - stored.savedAtMillis()) / 1000;
+        if (ageSeconds > maxAgeSeconds) {
+            logger.info("Ignoring registry cache saved {}s ago (older than {}s)", ageSeconds, maxAgeSeconds);
+            return List.of();
+        }
+
+        List<StoredEntry> servers = new ArrayList<>(stored.servers().size());
+        for (StoredEntry entry : stored.servers()) {
+            if (entry == null || entry.name() == null || entry.backendId() == null || entry.host() == null) {
+                continue;
+            }
+            if (entry.labels() == null) {
+                entry = new StoredEntry(entry.name(), entry.backendId(), entry.host(), entry.port(), entry.projectId(),
+                    entry.serviceName(), entry.replica(), entry.capacity(), Map.of(), entry.routable());
+            }
+            servers.add(entry);
+        }
+        return servers;
+    }
+
+    void save(RegistrySnapshot snapshot) {
+        List<StoredEntry> servers = new ArrayList<>(snapshot.size());
+        for (RegistryEntry entry : snapshot.sorted()) {
+            servers.add(new StoredEntry(entry.name(), entry.backendId(), entry.address().getHostString(),
+                entry.address().getPort(), entry.projectId(), entry.serviceName(), entry.replica(),
+                entry.capacity(), entry.labels(), entry.isRoutable()));
+        }
+
+        Path temp = file.resolveSibling(FILE_NAME + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                GSON.toJson(new StoredRegistry(FORMAT_VERSION, System.currentTimeMillis(), servers), writer);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to save registry cache {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package net.plexverse.velocityautoregister;
+
+import net.plexverse.velocityautoregister.api.DiscoveredServer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lookup tables for one {@link RegistrySnapshot}, used by the public {@link RegistryDirectory}.
+ * Built on first use rather than on publish, so the discovery thread pays nothing for it while
+ * no other plugin is asking. Every list is unmodifiable and sorted by server name.
+ */
+final class ServerIndex {
+
+    private final List<DiscoveredServer> all;
+    private final Map<String, List<DiscoveredServer>> byProject;
+    private final Map<String, List<DiscoveredServer>> byService;
+    /** Label key, then label value. */
+    private final Map<String, Map<String, List<DiscoveredServer>>> byLabel;
+
+    ServerIndex(RegistrySnapshot snapshot) {
+        RegistryEntry[] sorted = snapshot.sorted();
+        this.all = List.copyOf(Arrays.asList(sorted));
+
+        Map<String, List<DiscoveredServer>> byProject = new HashMap<>();
+        Map<String, List<DiscoveredServer>> byService = new HashMap<>();
+        Map<String, Map<String, List<DiscoveredServer>>> byLabel = new HashMap<>();
+        for (RegistryEntry entry : sorted) {
+            if (entry.projectId() != null) {
+                byProject.computeIfAbsent(entry.projectId(), k -> new ArrayList<>()).add(entry);
+            }
+            byService.computeIfAbsent(entry.serviceName(), k -> new ArrayList<>()).add(entry);
+            for (Map.Entry<String, String> label : entry.labels().entrySet()) {
+                if (label.getKey() != null && label.getValue() != null) {
+                    byLabel.computeIfAbsent(label.getKey(), k -> new HashMap<>())
+                        .computeIfAbsent(label.getValue(), k -> new ArrayList<>())
+                        .add(entry);
+                }
+            }
+        }
+        this.byProject = freeze(byProject);
+        this.byService = freeze(byService);
+        Map<String, Map<String, List<DiscoveredServer>>> frozenLabels = new HashMap<>();
+        byLabel.forEach((key, values) -> frozenLabels.put(key, freeze(values)));
+        this.byLabel = Map.copyOf(frozenLabels);
+    }
+
+    List<DiscoveredServer> all() {
+        return all;
+    }
+
+    List<DiscoveredServer> byProject(String projectId) {
+        return byProject.getOrDefault(projectId, List.of());
+    }
+
+    List<DiscoveredServer> byService(String serviceName) {
+        return byService.getOrDefault(serviceName, List.of());
+    }
+
+    List<DiscoveredServer> byLabel(String key, String value) {
+        return byLabel.getOrDefault(key, Map.of()).getOrDefault(value, List.of());
+    }
+
+    private static Map<String, List<DiscoveredServer>> freeze(Map<String, List<DiscoveredServer>> index) {
+        Map<String, List<DiscoveredServer>> frozen = new HashMap<>(index.size() * 2);
+        index.forEach((key, servers) -> frozen.put(key, List.copyOf(servers)));
+        return Map.copyOf(frozen);
+    }
+}
@@ -0,0 +1,28 @@
+package net.plexverse.velocityautoregister;
+
+import java.util.Map;
+
+/**
+ * Holds the auto-registered backends. Discovery is the only writer and publishes a complete
+ * new {@link RegistrySnapshot} for each cycle that changed something; event threads read the current snapshot with a
+ * single volatile load and never block or see a half-applied update.
+ */
+final class ServerRegistry {
+
+    private volatile RegistrySnapshot current = RegistrySnapshot.EMPTY;
+
+    RegistrySnapshot snapshot() {
+        return current;
+    }
+
+    /**
+     * Replaces the registry contents. Must only be called from the discovery thread.
+     *
+     * @return the published snapshot
+     */
+    RegistrySnapshot publish(Map<String, RegistryEntry> entries) {
+        RegistrySnapshot next = new RegistrySnapshot(current.version() + 1, entries);
+        current = next;
+        return next;
+    }
+}
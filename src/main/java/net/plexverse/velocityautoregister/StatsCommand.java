@@ -0,0 +1,88 @@
+package net.plexverse.velocityautoregister;
+
+import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.command.SimpleCommand;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@code /autoregister stats}: a readable summary of the metrics the Prometheus endpoint exports.
+ */
+final class StatsCommand implements SimpleCommand {
+
+    static final String PERMISSION = "velocityautoregister.stats";
+
+    private static final LegacyComponentSerializer SERIALIZER = LegacyComponentSerializer.legacyAmpersand();
+
+    private final PluginMetrics metrics;
+    private final ServerRegistry registry;
+
+    StatsCommand(PluginMetrics metrics, ServerRegistry registry) {
+        this.metrics = metrics;
+        this.registry = registry;
+    }
+
+    @Override
+    public void execute(Invocation invocation) {
+        CommandSource source = invocation.source();
+        String[] args = invocation.arguments();
+        if (args.length != 1 || !args[0].equalsIgnoreCase("stats")) {
+            send(source, "&cUsage: /" + invocation.alias() + " stats");
+            return;
+        }
+
+        RegistrySnapshot snapshot = registry.snapshot();
+        long lastSuccess = metrics.lastSuccessfulCycleMillis();
+        send(source, "&6Discovery: &f" + metrics.cycles() + " cycles, " + metrics.cycleFailures() + " failed, p50 "
+            + millis(metrics.cycleDuration().quantileNanos(0.5)) + ", p99 " + millis(metrics.cycleDuration().quantileNanos(0.99))
+            + ", last success " + (lastSuccess == 0 ? "never" : (System.currentTimeMillis() - lastSuccess) / 1000 + "s ago"));
+
+        new TreeMap<>(metrics.dockerRequests()).forEach((endpoint, byPath) -> new TreeMap<>(byPath).forEach((path, stats) ->
+            send(source, "&6Docker " + endpoint + " " + path + ": &f" + stats.requests() + " calls, " + stats.errors()
+                + " errors, p99 " + millis(stats.latency().quantileNanos(0.99)))));
+
+        Map<String, Integer> byProject = new TreeMap<>();
+        for (RegistryEntry entry : snapshot.sorted()) {
+            byProject.merge(entry.projectId() != null ? entry.projectId() : "-", 1, Integer::sum);
+        }
+        send(source, "&6Registry: &f" + snapshot.size() + " servers (version " + snapshot.version() + "), "
+            + metrics.serversAdded() + " registered, " + metrics.serversUpdated() + " updated, "
+            + metrics.serversRemoved() + " unregistered");
+        byProject.forEach((project, count) -> send(source, "&7  " + project + ": &f" + count));
+
+        send(source, "&6Routing: &f" + metrics.routeDecision().count() + " joins routed, " + metrics.routeFailures()
+            + " without a server, p99 decision " + micros(metrics.routeDecision().quantileNanos(0.99)));
+        for (RegistryEntry lobby : snapshot.lobbies()) {
+            BackendState state = lobby.state();
+            double rtt = state.smoothedRttMillis();
+            send(source, (lobby.isRoutable() ? "&a  " : "&c  ") + lobby.name() + "&f: " + state.players() + " players, "
+                + state.selections() + " selected, ping " + (rtt < 0 ? "-" : Math.round(rtt) + " ms, p99 "
+                + millis(state.pingLatency().quantileNanos(0.99))));
+        }
+    }
+
+    @Override
+    public List<String> suggest(Invocation invocation) {
+        return List.of("stats");
+    }
+
+    @Override
+    public boolean hasPermission(Invocation invocation) {
+        return invocation.source().hasPermission(PERMISSION);
+    }
+
+    private static void send(CommandSource source, String message) {
+        source.sendMessage(SERIALIZER.deserialize(message));
+    }
+
+    private static String millis(long nanos) {
+        return nanos == Long.MAX_VALUE ? ">10 s" : nanos / 1_000_000 + " ms";
+    }
+
+    private static String micros(long nanos) {
+        return nanos == Long.MAX_VALUE ? ">10 ms" : nanos / 1_000 + " \u00b5s";
+    }
+}
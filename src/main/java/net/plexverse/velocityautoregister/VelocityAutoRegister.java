@@ -1,30 +1,42 @@
 package net.plexverse.velocityautoregister;
 
-import com.github.dockerjava.api.DockerClient;
-import com.github.dockerjava.api.model.Container;
-import com.github.dockerjava.api.model.Service;
-import com.github.dockerjava.core.DefaultDockerClientConfig;
-import com.github.dockerjava.core.DockerClientImpl;
-import com.github.dockerjava.httpclient5.ApacheDockerHttpClient;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.PostOrder;
+import com.velocitypowered.api.event.Continuation;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.event.player.KickedFromServerEvent;
 import com.velocitypowered.api.event.player.PlayerChooseInitialServerEvent;
+import com.velocitypowered.api.event.player.ServerPreConnectEvent;
+import com.velocitypowered.api.event.player.ServerConnectedEvent;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
 import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
+import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
-import com.velocitypowered.api.proxy.server.ServerInfo;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import net.plexverse.velocityautoregister.api.ServerDirectory;
 import org.slf4j.Logger;
 
 import javax.inject.Inject;
+import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Plugin(
@@ -36,182 +48,686 @@ import java.util.stream.Collectors;
 )
 public class VelocityAutoRegister {
     
+    static final String PROJECT_LABEL = "com.plexverse.project.id";
+    static final String COMPOSE_CONTAINER_NUMBER_LABEL = "com.docker.compose.container-number";
+    /** Port game servers listen on inside their containers. */
+    private static final int GAME_PORT = 25565;
+    
     private final ProxyServer server;
     private final Logger logger;
     private final Path dataDirectory;
-    private DockerClient dockerClient;
-    private final Set<String> registeredServers = new HashSet<>();
-    private volatile String defaultServerName = null;
-    private static final Pattern COMPOSE_SCALE_PATTERN = Pattern.compile("^(.+)_(\\d+)$");
+    private PluginConfig config;
+    private final List<DockerEndpoint> endpoints = new ArrayList<>();
+    /** Whether several endpoints are configured, so names carry the endpoint even if some failed to start. */
+    private boolean qualifiedNames;
+    private ScheduledTask healthTask;
+    private ScheduledExecutorService discoveryExecutor;
+    private ExecutorService endpointExecutor;
+    private AdaptiveInterval discoveryInterval;
+    private ScheduledFuture<?> nextCycle;
+    private volatile boolean shuttingDown;
+    private volatile boolean ambiguousNetworkWarned;
+    private final AtomicBoolean discoveryQueued = new AtomicBoolean();
+    private final ServerRegistry registry = new ServerRegistry();
+    private final PlayerLoadTracker loadTracker = new PlayerLoadTracker(registry);
+    private final PluginMetrics metrics = new PluginMetrics();
+    private final RegistryDirectory directory;
+    private PrometheusExporter metricsExporter;
+    private RegistryReconciler reconciler;
+    private HealthHysteresis healthHysteresis;
+    private RegistryStore registryStore;
+    private Map<String, RegistryEntry> provisionalServers;
+    private InitialServerBalancer balancer = BalancingStrategy.POWER_OF_TWO;
+    private FailoverRedirector failover;
     
     @Inject
     public VelocityAutoRegister(ProxyServer server, Logger logger, @DataDirectory Path dataDirectory) {
         this.server = server;
         this.logger = logger;
         this.dataDirectory = dataDirectory;
+        this.directory = new RegistryDirectory(registry, logger);
+    }
+    
+    /**
+     * Indexed view of the auto-registered servers for other plugins, which reach it through
+     * {@code PluginContainer#getInstance()}. Usable as soon as the plugin is constructed; it
+     * is empty until the first servers are registered.
+     */
+    public ServerDirectory getServerDirectory() {
+        return directory;
     }
     
     @Subscribe
     public void onProxyInitialization(ProxyInitializeEvent event) {
         logger.info("Velocity Auto Register plugin enabled");
+        config = PluginConfig.load(dataDirectory, logger);
+        balancer = config.getRouting().getStrategy();
+        PluginConfig.Routing routing = config.getRouting();
+        if (routing.isFailover()) {
+            failover = new FailoverRedirector(registry, loadTracker, balancer, logger,
+                routing.getFailoverConcurrency(), routing.getFailoverTimeoutMillis());
+        }
+        reconciler = new RegistryReconciler(server, logger, metrics,
+            TimeUnit.SECONDS.toMillis(config.getDiscovery().getDrainTimeoutSeconds()));
+        PluginConfig.Health healthConfig = config.getHealth();
+        // Streaks are measured against the scheduled cycle interval, not the burst or event-driven rescans
+        healthHysteresis = new HealthHysteresis(logger, healthConfig.getRiseThreshold(),
+            healthConfig.getDockerFailureThreshold(), TimeUnit.SECONDS.toMillis(healthConfig.getMinDwellSeconds()),
+            TimeUnit.SECONDS.toMillis(config.getDiscovery().getPollIntervalSeconds()));
         
-        // Initialize Docker client
-        try {
-            // Connect to Docker socket
-            DefaultDockerClientConfig config = DefaultDockerClientConfig.createDefaultConfigBuilder()
-                .withDockerHost("unix:///var/run/docker.sock")
-                .build();
-            
-            ApacheDockerHttpClient httpClient = new ApacheDockerHttpClient.Builder()
-                .dockerHost(config.getDockerHost())
-                .build();
-            
-            dockerClient = DockerClientImpl.getInstance(config, httpClient);
-            
-            logger.info("Connected to Docker socket at unix:///var/run/docker.sock");
-        } catch (Exception e) {
-            logger.error("Failed to connect to Docker socket", e);
+        server.getCommandManager().register(
+            server.getCommandManager().metaBuilder("autoregister").plugin(this).build(),
+            new StatsCommand(metrics, registry));
+        PluginConfig.Metrics metricsConfig = config.getMetrics();
+        if (metricsConfig.isHttpEnabled()) {
+            metricsExporter = new PrometheusExporter(metrics, registry, logger);
+            try {
+                metricsExporter.start(metricsConfig.getHttpHost(), metricsConfig.getHttpPort());
+            } catch (IOException e) {
+                logger.error("Failed to start metrics listener on {}:{}", metricsConfig.getHttpHost(), metricsConfig.getHttpPort(), e);
+                metricsExporter = null;
+            }
+        }
+        
+        // Initialize one set of Docker clients per configured daemon
+        PluginConfig.Discovery discovery = config.getDiscovery();
+        qualifiedNames = discovery.getEndpoints().size() > 1;
+        for (PluginConfig.Endpoint endpointConfig : discovery.getEndpoints()) {
+            try {
+                endpoints.add(new DockerEndpoint(endpointConfig, discovery, metrics, logger));
+                logger.info("Connected to Docker endpoint {} at {}", endpointConfig.getName(), endpointConfig.getHost());
+            } catch (Exception e) {
+                logger.error("Failed to connect to Docker endpoint {} at {}", endpointConfig.getName(), endpointConfig.getHost(), e);
+            }
+        }
+        if (endpoints.isEmpty()) {
             return;
         }
         
-        // Initial discovery
-        logger.info("Starting initial server discovery...");
-        discoverAndRegisterServers();
-        logger.info("Initial server discovery complete. Found {} registered server(s)", registeredServers.size());
+        // Route players to the servers of the previous run until the first scan confirms or evicts them
+        if (config.getPersistence().isEnabled()) {
+            registryStore = new RegistryStore(dataDirectory, logger);
+            restoreSavedRegistry();
+        }
+        
+        // Every Docker call runs on this one thread, so cycles never overlap and never block the proxy
+        discoveryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "velocity-auto-register-discovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (qualifiedNames) {
+            // Endpoints are scanned side by side, so one slow daemon does not hold up the others
+            AtomicInteger endpointThreads = new AtomicInteger();
+            endpointExecutor = Executors.newFixedThreadPool(endpoints.size(), runnable -> {
+                Thread thread = new Thread(runnable, "velocity-auto-register-endpoint-" + endpointThreads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        
+        // In events mode scheduled cycles are only a fallback, so they may idle for longer
+        long idleMillis = TimeUnit.SECONDS.toMillis(discovery.getMode() == PluginConfig.DiscoveryMode.EVENTS
+            ? discovery.getReconcileIntervalSeconds() : discovery.getIdleIntervalSeconds());
+        discoveryInterval = new AdaptiveInterval(discovery.getBurstIntervalMillis(),
+            TimeUnit.SECONDS.toMillis(discovery.getBurstWindowSeconds()),
+            TimeUnit.SECONDS.toMillis(discovery.getPollIntervalSeconds()), idleMillis,
+            TimeUnit.SECONDS.toMillis(discovery.getErrorBackoffMaxSeconds()));
         
-        // Schedule periodic discovery
-        server.getScheduler().buildTask(this, this::discoverAndRegisterServers)
-            .repeat(10, TimeUnit.SECONDS)
-            .schedule();
-        logger.info("Scheduled periodic server discovery every 10 seconds");
+        // Initial discovery runs in the background; the proxy accepts connections straight away
+        discoveryExecutor.execute(() -> {
+            logger.info("Starting initial server discovery...");
+            AdaptiveInterval.Outcome outcome = discoverAndRegisterServers();
+            logger.info("Initial server discovery complete. Found {} registered server(s)", registry.snapshot().size());
+            scheduleNextCycle(nextCycleDelay(outcome));
+        });
+        
+        if (discovery.getMode() == PluginConfig.DiscoveryMode.EVENTS) {
+            // React to Docker events as they happen; the slow rescan only catches missed events
+            for (DockerEndpoint endpoint : endpoints) {
+                DockerEventListener listener = new DockerEventListener(endpoint.eventsClient(), logger, this::requestDiscovery,
+                    (task, delaySeconds) -> discoveryExecutor.schedule(task, delaySeconds, TimeUnit.SECONDS),
+                    discovery.getEventReconnectSeconds());
+                endpoint.eventListener = listener;
+                discoveryExecutor.execute(listener::start);
+            }
+            logger.info("Watching Docker events, full reconcile at most every {} seconds", discovery.getReconcileIntervalSeconds());
+        } else {
+            logger.info("Scheduled adaptive server discovery every {} to {} seconds", 
+                discovery.getPollIntervalSeconds(), discovery.getIdleIntervalSeconds());
+        }
+        
+        // Ping every backend so dead or lagging servers stop receiving new players before Docker notices
+        PluginConfig.Health health = config.getHealth();
+        if (health.isEnabled()) {
+            healthTask = server.getScheduler().buildTask(this, new HealthProber(registry, logger, health))
+                .delay(health.getIntervalSeconds(), TimeUnit.SECONDS)
+                .repeat(health.getIntervalSeconds(), TimeUnit.SECONDS)
+                .schedule();
+            logger.info("Health checks: status ping every {} seconds", health.getIntervalSeconds());
+        }
+    }
+    
+    private void restoreSavedRegistry() {
+        List<RegistryStore.StoredEntry> saved = registryStore.load(config.getPersistence().getMaxAgeSeconds());
+        if (saved.isEmpty()) {
+            return;
+        }
+        Map<String, RegistryEntry> restored = reconciler.restore(saved);
+        if (!restored.isEmpty()) {
+            provisionalServers = restored;
+            RegistrySnapshot previous = registry.snapshot();
+            directory.published(previous, registry.publish(restored));
+            logger.info("Restored {} server(s) from the previous run until discovery confirms them", restored.size());
+        }
+    }
+    
+    /**
+     * Queues a discovery run shortly after a Docker event. Bursts of events (a service
+     * scaling up, a container dying and restarting) collapse into a single run.
+     */
+    private void requestDiscovery() {
+        if (!discoveryQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            discoveryExecutor.schedule(() -> {
+                    discoveryQueued.set(false);
+                    AdaptiveInterval.Outcome outcome = discoverAndRegisterServers();
+                    // Only the scheduled loop moves the error backoff forward, so a failure here is left to it
+                    if (outcome == AdaptiveInterval.Outcome.CHANGED) {
+                        // A change starts a burst of quick rescans; bring the next scheduled cycle forward if needed
+                        long delay = discoveryInterval.next(outcome, System.nanoTime());
+                        if (nextCycle == null || nextCycle.getDelay(TimeUnit.MILLISECONDS) > delay) {
+                            scheduleNextCycle(delay);
+                        }
+                    }
+                }, config.getDiscovery().getEventDebounceMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            discoveryQueued.set(false);
+        }
+    }
+    
+    /**
+     * Delay before the next scheduled cycle. The events stream only reports containers on the
+     * daemon's own node, and Swarm service events only fire on spec changes, so a task that dies
+     * on another node goes unnoticed until a rescan. While a Swarm is watched in events mode, the
+     * fallback rescan therefore never waits longer than the poll interval.
+     */
+    private long nextCycleDelay(AdaptiveInterval.Outcome outcome) {
+        long delay = discoveryInterval.next(outcome, System.nanoTime());
+        PluginConfig.Discovery discovery = config.getDiscovery();
+        if (outcome != AdaptiveInterval.Outcome.FAILED && discovery.getMode() == PluginConfig.DiscoveryMode.EVENTS
+            && endpoints.stream().anyMatch(endpoint -> endpoint.swarm)) {
+            return Math.min(delay, TimeUnit.SECONDS.toMillis(discovery.getPollIntervalSeconds()));
+        }
+        return delay;
+    }
+    
+    /**
+     * Replaces the pending scheduled cycle with one that runs after {@code delayMillis}. Each
+     * scheduled cycle picks the delay of the next one, so cycles never overlap.
+     */
+    private void scheduleNextCycle(long delayMillis) {
+        if (nextCycle != null) {
+            nextCycle.cancel(false);
+        }
+        metrics.nextCycleScheduled(delayMillis);
+        logger.debug("Next discovery cycle in {} ms", delayMillis);
+        try {
+            nextCycle = discoveryExecutor.schedule(() -> {
+                    AdaptiveInterval.Outcome outcome = discoverAndRegisterServers();
+                    scheduleNextCycle(nextCycleDelay(outcome));
+                }, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            nextCycle = null;
+        }
     }
     
     @Subscribe
     public void onProxyShutdown(ProxyShutdownEvent event) {
-        if (dockerClient != null) {
+        shuttingDown = true;
+        if (metricsExporter != null) {
+            metricsExporter.stop();
+        }
+        if (healthTask != null) {
+            healthTask.cancel();
+        }
+        for (DockerEndpoint endpoint : endpoints) {
+            if (endpoint.eventListener != null) {
+                endpoint.eventListener.stop();
+            }
+        }
+        if (endpointExecutor != null) {
+            endpointExecutor.shutdownNow();
+        }
+        if (discoveryExecutor != null) {
+            discoveryExecutor.shutdownNow();
             try {
-                dockerClient.close();
-            } catch (Exception e) {
-                logger.warn("Error closing Docker client", e);
+                if (!discoveryExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    logger.warn("Discovery did not stop within 5 seconds");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
+        if (registryStore != null && provisionalServers == null) {
+            // Captures the latest health state for the next start
+            registryStore.save(registry.snapshot());
+        }
+        for (DockerEndpoint endpoint : endpoints) {
+            endpoint.close();
+        }
     }
     
     @Subscribe
     public void onPlayerChooseInitialServer(PlayerChooseInitialServerEvent event) {
         // Set the initial server for the player when they first connect
-        String targetServer = getDefaultServerName();
-        if (targetServer != null) {
-            server.getServer(targetServer).ifPresent(target -> {
-                logger.info("Setting initial server for player {} to: {}", event.getPlayer().getUsername(), targetServer);
-                event.setInitialServer(target);
-            });
+        RegistryEntry target = routeInitialServer(registry, balancer, loadTracker, metrics, event.getPlayer());
+        if (target != null) {
+            logger.info("Setting initial server for player {} to: {}", event.getPlayer().getUsername(), target.name());
+            event.setInitialServer(target.server());
         } else {
             logger.warn("No default server available for player {}", event.getPlayer().getUsername());
         }
     }
     
-    private String getDefaultServerName() {
-        // Return cached default if still valid
-        if (defaultServerName != null && server.getServer(defaultServerName).isPresent()) {
-            return defaultServerName;
+    @Subscribe
+    public void onServerPreConnect(ServerPreConnectEvent event) {
+        // Transfers (/server, other plugins) must not land on a server that is draining
+        RegisteredServer target = event.getResult().getServer().orElse(null);
+        if (target == null) {
+            return;
+        }
+        RegistryEntry entry = registry.snapshot().get(target.getServerInfo().getName());
+        if (entry != null && entry.server() == target && entry.state().draining()) {
+            event.setResult(ServerPreConnectEvent.ServerResult.denied());
+            logger.debug("Denied {} connecting to draining server {}", event.getPlayer().getUsername(), entry.name());
+            if (event.getPlayer().getCurrentServer().isPresent()) {
+                event.getPlayer().sendMessage(Component.text("That server is shutting down, try another one."));
+            }
         }
-        
-        // Find new default server
-        updateDefaultServer();
-        return defaultServerName;
     }
     
-    private void updateDefaultServer() {
-        // Collect all servers with 'lobby' in the name
-        List<String> lobbyServers = registeredServers.stream()
-            .filter(name -> name.toLowerCase().contains("lobby"))
-            .filter(name -> server.getServer(name).isPresent())
-            .collect(java.util.stream.Collectors.toList());
-        
-        if (!lobbyServers.isEmpty()) {
-            // Select a random lobby server
-            Random random = new Random();
-            defaultServerName = lobbyServers.get(random.nextInt(lobbyServers.size()));
-            logger.info("Default server set to: {} (random lobby server from {} available)", 
-                defaultServerName, lobbyServers.size());
+    @Subscribe(order = PostOrder.EARLY)
+    public void onKickedFromServer(KickedFromServerEvent event, Continuation continuation) {
+        // Early, so plugins that deliberately disconnect a kicked player still have the last word
+        if (failover == null) {
+            continuation.resume();
             return;
         }
-        
-        // Otherwise use first available server
-        Optional<String> firstServer = registeredServers.stream()
-            .filter(name -> server.getServer(name).isPresent())
-            .sorted()
-            .findFirst();
-        
-        if (firstServer.isPresent()) {
-            defaultServerName = firstServer.get();
-            logger.info("Default server set to: {} (first available)", defaultServerName);
-        } else {
-            defaultServerName = null;
-            logger.warn("No servers available for default connection");
+        failover.onKicked(event, continuation);
+    }
+    
+    @Subscribe
+    public void onServerConnected(ServerConnectedEvent event) {
+        if (failover != null) {
+            failover.released(event.getPlayer().getUniqueId());
         }
+        drainProgressed(loadTracker.connected(event.getPlayer(), event.getServer()));
     }
     
-    private void discoverAndRegisterServers() {
+    @Subscribe
+    public void onDisconnect(DisconnectEvent event) {
+        if (failover != null) {
+            failover.released(event.getPlayer().getUniqueId());
+        }
+        drainProgressed(loadTracker.disconnected(event.getPlayer()));
+    }
+    
+    /**
+     * A player left {@code left}; if that emptied a draining server, rescan now so it is
+     * unregistered (and its replacement registered) without waiting for the next cycle.
+     */
+    private void drainProgressed(BackendState left) {
+        if (left != null && left.draining() && left.players() == 0 && discoveryExecutor != null) {
+            requestDiscovery();
+        }
+    }
+    
+    /**
+     * The join path: picks the initial server for {@code player}, records the routing time and
+     * counts the player against the chosen server. Package-private so the routing benchmark
+     * measures exactly what a join costs.
+     *
+     * @return the chosen server, or {@code null} if nothing is registered
+     */
+    static RegistryEntry routeInitialServer(ServerRegistry registry, InitialServerBalancer balancer,
+                                            PlayerLoadTracker loadTracker, PluginMetrics metrics, Player player) {
+        long start = System.nanoTime();
+        RegistryEntry target = selectInitialServer(registry.snapshot(), balancer);
+        metrics.routed(target, System.nanoTime() - start);
+        if (target != null) {
+            loadTracker.routed(player, target);
+        }
+        return target;
+    }
+    
+    /**
+     * Picks a lobby for a joining player with the configured balancer, or the alphabetically
+     * first routable server when there are no lobbies.
+     */
+    private static RegistryEntry selectInitialServer(RegistrySnapshot snapshot, InitialServerBalancer balancer) {
+        RegistryEntry[] lobbyServers = snapshot.lobbies();
+        if (lobbyServers.length > 0) {
+            return balancer.select(lobbyServers);
+        }
+        for (RegistryEntry entry : snapshot.sorted()) {
+            if (entry.isRoutable()) {
+                return entry;
+            }
+        }
+        return snapshot.firstByName();
+    }
+    
+    private synchronized AdaptiveInterval.Outcome discoverAndRegisterServers() {
+        long start = System.nanoTime();
         try {
-            Set<String> currentServers = new HashSet<>();
-            int foundCount = 0;
-            int registeredCount = 0;
+            RegistrySnapshot previous = registry.snapshot();
+            List<DiscoveredBackend> discovered = new ArrayList<>();
+            Set<String> failedEndpoints = new HashSet<>();
+            if (!qualifiedNames) {
+                // A single configured endpoint keeps plain names, and its failure fails the whole cycle
+                discovered.addAll(scanEndpoint(endpoints.get(0)));
+            } else {
+                scanEndpoints(discovered, failedEndpoints);
+            }
             
-            // Try Docker Swarm mode first
-            try {
-                List<Service> services = dockerClient.listServicesCmd().exec();
-                logger.debug("Found {} Docker service(s) in Swarm mode", services.size());
-                if (!services.isEmpty()) {
-                    foundCount = discoverFromSwarmServices(services, currentServers);
-                    registeredCount = currentServers.size();
-                    logger.info("Swarm mode: Found {} server(s), {} currently registered", foundCount, registeredCount);
-                } else {
-                    logger.debug("No services found in Swarm mode, trying container mode");
-                    discoverFromContainers(currentServers);
-                }
-            } catch (Exception e) {
-                // Not in Swarm mode or error, try container mode
-                logger.debug("Swarm mode not available ({}), trying container mode", e.getMessage());
-                foundCount = discoverFromContainers(currentServers);
-                registeredCount = currentServers.size();
-                logger.info("Container mode: Found {} server(s), {} currently registered", foundCount, registeredCount);
+            if (shuttingDown) {
+                // Leave the registry alone once the proxy is going down
+                return AdaptiveInterval.Outcome.UNCHANGED;
             }
             
-            // Unregister servers that are no longer running
-            Set<String> toRemove = new HashSet<>(registeredServers);
-            toRemove.removeAll(currentServers);
-            if (!toRemove.isEmpty()) {
-                logger.info("Removing {} server(s) that are no longer running: {}", toRemove.size(), toRemove);
-                for (String serverName : toRemove) {
-                    server.getServer(serverName).ifPresent(registeredServer -> {
-                        server.unregisterServer(registeredServer.getServerInfo());
-                        registeredServers.remove(serverName);
-                        logger.info("Unregistered server: {} (no longer running)", serverName);
-                    });
+            discovered = applyHealthHysteresis(discovered, failedEndpoints.isEmpty());
+            
+            // Register, re-register and unregister only what changed since the last cycle;
+            // servers of endpoints that could not be scanned are kept as they were
+            Map<String, RegistryEntry> currentServers = failedEndpoints.isEmpty()
+                ? reconciler.reconcile(previous, discovered)
+                : reconciler.reconcile(previous, discovered, entry -> failedEndpoints.contains(endpointOf(entry)));
+            
+            // Publish only when something changed, so idle cycles keep the snapshot and its index;
+            // a server starting or stopping to drain keeps its entry but changes the lobbies
+            boolean changed = !currentServers.equals(previous.entries()) || previous.drainingChanged();
+            RegistrySnapshot snapshot = previous;
+            if (changed) {
+                snapshot = registry.publish(currentServers);
+                directory.published(previous, snapshot);
+            }
+            if (registryStore != null && changed) {
+                registryStore.save(snapshot);
+            }
+            if (provisionalServers != null) {
+                logProvisionalOutcome(snapshot);
+            }
+            if (failover != null && changed) {
+                // The reconciler has already unregistered servers that disappeared or finished draining;
+                // move the players still connected to them. A server re-registered under the same name
+                // (new task or address) is left alone, its players are handled if the backend kicks them
+                List<RegistryEntry> removed = new ArrayList<>();
+                for (RegistryEntry entry : previous.entries().values()) {
+                    RegistryEntry current = currentServers.get(entry.name());
+                    if (current == null || (entry.state().draining() && current.server() != entry.server())) {
+                        removed.add(entry);
+                    }
+                }
+                failover.evacuate(removed);
+            }
+            if (snapshot.lobbies().length != previous.lobbies().length || snapshot.size() != previous.size()) {
+                if (snapshot.lobbies().length > 0) {
+                    logger.info("Routing joining players across {} lobby server(s) ({})", 
+                        snapshot.lobbies().length, balancer);
+                } else if (snapshot.firstByName() != null) {
+                    logger.info("No lobby servers registered, routing joining players to: {} (first available)", 
+                        snapshot.firstByName().name());
+                } else {
+                    logger.warn("No servers available for default connection");
                 }
             }
             
-            // Update default server after registration changes
-            updateDefaultServer();
-            
-            logger.debug("Discovery complete. Total registered: {}, Current running: {}", 
-                registeredServers.size(), currentServers.size());
+            metrics.cycleSucceeded(System.nanoTime() - start);
+            logger.debug("Discovery complete. Total registered: {} (registry version {})", 
+                snapshot.size(), snapshot.version());
+            // Keep the burst cadence while a flapping server waits on its next health checks
+            return changed || healthHysteresis.unsettled()
+                ? AdaptiveInterval.Outcome.CHANGED : AdaptiveInterval.Outcome.UNCHANGED;
             
         } catch (Exception e) {
+            metrics.cycleFailed(System.nanoTime() - start);
             logger.error("Error discovering servers from Docker", e);
+            return AdaptiveInterval.Outcome.FAILED;
         }
     }
     
-    private int discoverFromSwarmServices(List<Service> services, Set<String> currentServers) {
+    /**
+     * Runs each backend's Docker health check result through the hysteresis: servers failing
+     * their checks stay registered out of rotation until they fail enough in a row, and are
+     * dropped from {@code discovered} after that. Draining backends pass through as they are.
+     *
+     * @param complete whether every endpoint was scanned, so backends not seen are really gone
+     */
+    private List<DiscoveredBackend> applyHealthHysteresis(List<DiscoveredBackend> discovered, boolean complete) {
+        healthHysteresis.beginCycle();
+        long now = System.nanoTime();
+        List<DiscoveredBackend> admitted = new ArrayList<>(discovered.size());
+        for (DiscoveredBackend backend : discovered) {
+            if (backend.draining()) {
+                admitted.add(backend);
+                continue;
+            }
+            switch (healthHysteresis.observe(backend.id(), backend.name(), backend.healthy(), now)) {
+                case IN_ROTATION -> admitted.add(backend.withHealthy(true));
+                case OUT_OF_ROTATION -> admitted.add(backend.withHealthy(false));
+                case EXCLUDED -> logger.debug("Server {} is not registered until its Docker health check passes", backend.name());
+            }
+        }
+        if (complete) {
+            healthHysteresis.evictUnseen();
+        }
+        return admitted;
+    }
+    
+    /**
+     * Reports how many servers restored at startup the first successful discovery kept.
+     */
+    private void logProvisionalOutcome(RegistrySnapshot snapshot) {
+        int confirmed = 0;
+        for (RegistryEntry restored : provisionalServers.values()) {
+            RegistryEntry current = snapshot.get(restored.name());
+            if (current != null && current.backendId().equals(restored.backendId())) {
+                confirmed++;
+            }
+        }
+        logger.info("Discovery confirmed {} of {} restored server(s), evicted or replaced {}", 
+            confirmed, provisionalServers.size(), provisionalServers.size() - confirmed);
+        provisionalServers = null;
+    }
+    
+    /**
+     * Scans all endpoints in parallel, waiting at most the endpoint timeout for the slowest.
+     * Names and backend IDs are prefixed with the endpoint name so replicas on different
+     * daemons never collide. Endpoints that fail, time out or are still busy with an earlier
+     * scan are added to {@code failed}; the cycle only fails if every endpoint did.
+     */
+    private void scanEndpoints(List<DiscoveredBackend> discovered, Set<String> failed) throws IOException, InterruptedException {
+        long timeoutMillis = config.getDiscovery().getEndpointTimeoutMillis();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        
+        Map<DockerEndpoint, Future<List<DiscoveredBackend>>> scans = new LinkedHashMap<>();
+        for (DockerEndpoint endpoint : endpoints) {
+            if (endpoint.pendingScan != null && !endpoint.pendingScan.isDone()) {
+                logger.warn("Docker endpoint {} is still busy with an earlier scan, keeping its servers", endpoint.name());
+                failed.add(endpoint.name());
+                continue;
+            }
+            Future<List<DiscoveredBackend>> scan = endpointExecutor.submit(() -> scanEndpoint(endpoint));
+            endpoint.pendingScan = scan;
+            scans.put(endpoint, scan);
+        }
+        
+        for (Map.Entry<DockerEndpoint, Future<List<DiscoveredBackend>>> scan : scans.entrySet()) {
+            DockerEndpoint endpoint = scan.getKey();
+            try {
+                List<DiscoveredBackend> found = scan.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                for (DiscoveredBackend backend : found) {
+                    discovered.add(qualify(endpoint, backend));
+                }
+            } catch (TimeoutException e) {
+                // Not cancelled: the request timeouts end it, and the endpoint is skipped until they do
+                logger.warn("Docker endpoint {} did not answer within {} ms, keeping its servers", endpoint.name(), timeoutMillis);
+                failed.add(endpoint.name());
+            } catch (ExecutionException e) {
+                logger.warn("Discovery on Docker endpoint {} failed ({}), keeping its servers", 
+                    endpoint.name(), e.getCause().getMessage());
+                logger.debug("Discovery failure on Docker endpoint {}", endpoint.name(), e.getCause());
+                failed.add(endpoint.name());
+            }
+        }
+        
+        if (failed.size() == endpoints.size()) {
+            throw new IOException("None of the " + endpoints.size() + " Docker endpoints could be scanned");
+        }
+    }
+    
+    /**
+     * Finds the game servers on one Docker daemon, trying Swarm mode first and falling back to
+     * compose containers.
+     */
+    private List<DiscoveredBackend> scanEndpoint(DockerEndpoint endpoint) throws IOException {
+        List<DiscoveredBackend> discovered = new ArrayList<>();
+        int foundCount;
+        
+        // Try Docker Swarm mode first
+        try {
+            List<DockerApi.SwarmService> services = listSwarmServices(endpoint);
+            logger.debug("Found {} Docker service(s) in Swarm mode on {}", services.size(), endpoint.name());
+            if (!services.isEmpty()) {
+                endpoint.swarm = true;
+                if (endpoint.isRemote()) {
+                    warnAddressesOnce(endpoint, "Swarm tasks on {} are registered by their overlay network address. "
+                        + "The proxy must be attached to an attachable overlay network shared with them");
+                }
+                foundCount = discoverFromSwarmServices(endpoint, services, discovered);
+                logger.debug("Swarm mode: Found {} server(s) on {}", foundCount, endpoint.name());
+                return discovered;
+            }
+            logger.debug("No services found in Swarm mode on {}, trying container mode", endpoint.name());
+        } catch (Exception e) {
+            // Not in Swarm mode or error, try container mode
+            logger.debug("Swarm mode not available on {} ({}), trying container mode", endpoint.name(), e.getMessage());
+            discovered.clear();
+        }
+        
+        endpoint.swarm = false;
+        if (endpoint.isRemote() && endpoint.advertisedHost().isEmpty()) {
+            warnAddressesOnce(endpoint, "Containers on {} are registered by their address on that daemon's networks, "
+                + "which the proxy cannot reach from another host unless it shares an overlay network with them. "
+                + "Set advertisedHost on the endpoint to use the containers' published ports instead");
+        }
+        foundCount = discoverFromContainers(endpoint, discovered);
+        logger.debug("Container mode: Found {} server(s) on {}", foundCount, endpoint.name());
+        return discovered;
+    }
+    
+    private void warnAddressesOnce(DockerEndpoint endpoint, String message) {
+        if (!endpoint.addressWarned) {
+            endpoint.addressWarned = true;
+            logger.warn(message, endpoint.name());
+        }
+    }
+    
+    /**
+     * Prefixes a backend's server name and ID with its endpoint, e.g. {@code node-2-lobby-1}.
+     */
+    private static DiscoveredBackend qualify(DockerEndpoint endpoint, DiscoveredBackend backend) {
+        return new DiscoveredBackend(endpoint.name() + "/" + backend.id(), endpoint.name() + "-" + backend.name(),
+            backend.serviceName(), backend.replica(), backend.host(), backend.port(), backend.projectId(),
+            backend.capacity(), backend.labels(), backend.healthy(), backend.draining());
+    }
+    
+    /**
+     * Backend IDs, as Docker reports them, of the registered servers found on {@code endpoint}.
+     */
+    private Set<String> registeredTaskIds(DockerEndpoint endpoint) {
+        Set<String> ids = new HashSet<>();
+        for (RegistryEntry entry : registry.snapshot().entries().values()) {
+            String entryEndpoint = endpointOf(entry);
+            if (!qualifiedNames) {
+                ids.add(entry.backendId());
+            } else if (endpoint.name().equals(entryEndpoint)) {
+                ids.add(entry.backendId().substring(entryEndpoint.length() + 1));
+            }
+        }
+        return ids;
+    }
+    
+    /**
+     * The endpoint a registered server was discovered on, from its qualified backend ID, or
+     * {@code null} for servers found while only one endpoint was configured.
+     */
+    private static String endpointOf(RegistryEntry entry) {
+        int slash = entry.backendId().indexOf('/');
+        return slash > 0 ? entry.backendId().substring(0, slash) : null;
+    }
+    
+    /**
+     * Lists Swarm services carrying the project label, letting the daemon do the filtering.
+     * The daemon only matches service-level labels, so when that comes back empty the full
+     * list is fetched once to check whether the labels live on the container specs instead.
+     * The first time the filter does find services, the full list is also checked once for
+     * services labelled only on their container spec; if there are any, the placements are
+     * mixed and the endpoint filters client-side from then on so none of them are dropped.
+     */
+    private List<DockerApi.SwarmService> listSwarmServices(DockerEndpoint endpoint) throws IOException {
+        if (endpoint.serviceLabelFilter) {
+            List<DockerApi.SwarmService> services = endpoint.api().listServices(PROJECT_LABEL);
+            if (!services.isEmpty()) {
+                if (endpoint.labelPlacementChecked) {
+                    return services;
+                }
+                endpoint.labelPlacementChecked = true;
+                Set<String> filtered = new HashSet<>();
+                services.forEach(service -> filtered.add(service.id()));
+                List<DockerApi.SwarmService> all = endpoint.api().listServices(null);
+                long specOnly = all.stream()
+                    .filter(service -> service.labels().containsKey(PROJECT_LABEL) && !filtered.contains(service.id()))
+                    .count();
+                if (specOnly == 0) {
+                    return services;
+                }
+                endpoint.serviceLabelFilter = false;
+                logger.warn("{} game server service(s) on {} carry the {} label only on their container spec while "
+                    + "others carry it on the service; filtering Swarm services client-side. Put the label on every "
+                    + "service (deploy.labels) to let the daemon filter", specOnly, endpoint.name(), PROJECT_LABEL);
+                return all;
+            }
+        }
+        
+        List<DockerApi.SwarmService> services = endpoint.api().listServices(null);
+        if (endpoint.serviceLabelFilter && services.stream().anyMatch(service -> service.labels().containsKey(PROJECT_LABEL))) {
+            endpoint.serviceLabelFilter = false;
+            logger.info("Game server labels are only set on container specs on {}, filtering Swarm services client-side", 
+                endpoint.name());
+        }
+        return services;
+    }
+    
+    private int discoverFromSwarmServices(DockerEndpoint endpoint, List<DockerApi.SwarmService> services, 
+                                          List<DiscoveredBackend> discovered) throws IOException {
         int totalFound = 0;
-        int newlyRegistered = 0;
         
         logger.debug("Scanning {} service(s) in Swarm mode", services.size());
         
-        for (Service service : services) {
-            String fullServiceName = service.getSpec().getName();
+        // Tasks of all services, fetched once and grouped by service ID on first use
+        Map<String, List<DockerApi.SwarmTask>> tasksByService = null;
+        
+        for (DockerApi.SwarmService service : services) {
+            String fullServiceName = service.name();
+            if (fullServiceName == null) {
+                continue;
+            }
             String serviceName = fullServiceName;
             
             // Remove stack prefix if present (e.g., "local-docker_" prefix)
@@ -226,24 +742,15 @@ public class VelocityAutoRegister {
             }
             
             // Check if this is a Minecraft game server service
-            // Labels are on ContainerSpec, not Service Spec
-            Map<String, String> labels = null;
-            if (service.getSpec().getTaskTemplate() != null && 
-                service.getSpec().getTaskTemplate().getContainerSpec() != null) {
-                labels = service.getSpec().getTaskTemplate().getContainerSpec().getLabels();
-            }
+            // Labels are on ContainerSpec, not Service Spec (DockerApi falls back to the service labels)
+            Map<String, String> labels = service.labels();
             
-            // Fallback to service labels if container labels not available
-            if (labels == null || labels.isEmpty()) {
-                labels = service.getSpec().getLabels();
-            }
-            
-            if (labels == null || labels.isEmpty()) {
+            if (labels.isEmpty()) {
                 logger.debug("Service {} has no labels, skipping", fullServiceName);
                 continue;
             }
             
-            String projectId = labels.get("com.plexverse.project.id");
+            String projectId = labels.get(PROJECT_LABEL);
             
             // Skip if not a game server (no project label)
             if (projectId == null) {
@@ -253,141 +760,119 @@ public class VelocityAutoRegister {
             
             logger.debug("Found game server service: {} (project ID: {})", fullServiceName, projectId);
             
+            if (tasksByService == null) {
+                tasksByService = listTasksByService(endpoint);
+            }
+            
             // Get running tasks for this service
-            List<com.github.dockerjava.api.model.Task> tasks = dockerClient.listTasksCmd()
-                .withServiceFilter(service.getId())
-                .exec();
+            List<DockerApi.SwarmTask> serviceTasks = tasksByService.getOrDefault(service.id(), Collections.emptyList());
             
-            // Filter to only running and healthy tasks
-            tasks = tasks.stream()
+            // Filter to only running tasks; their health is judged per backend by the health hysteresis
+            List<DockerApi.SwarmTask> tasks = serviceTasks.stream()
                 .filter(task -> {
-                    com.github.dockerjava.api.model.TaskState state = task.getStatus().getState();
-                    if (state != com.github.dockerjava.api.model.TaskState.RUNNING) {
-                        logger.debug("Task {} is not running (state: {})", task.getId(), state);
-                        return false;
-                    }
-                    
-                    // Check if task has an error message (indicates unhealthy)
-                    String err = task.getStatus().getErr();
-                    if (err != null && !err.isEmpty()) {
-                        logger.debug("Task {} has error: {}", task.getId(), err);
+                    String state = task.state();
+                    if (!"running".equals(state)) {
+                        logger.debug("Task {} is not running (state: {})", task.id(), state);
                         return false;
                     }
-                    
-                    // Check container health status if available
-                    // In Swarm mode, we check the task's desired state matches running state
-                    // and there's no error message
                     return true;
                 })
-                .collect(java.util.stream.Collectors.toList());
+                .collect(java.util.stream.Collectors.toCollection(ArrayList::new));
             
-            logger.debug("Service {} has {} healthy running task(s) (filtered from {} total)", 
-                fullServiceName, tasks.size(), dockerClient.listTasksCmd().withServiceFilter(service.getId()).exec().size());
+            logger.debug("Service {} has {} running task(s) (filtered from {} total)", 
+                fullServiceName, tasks.size(), serviceTasks.size());
+            int capacity = parseCapacity(labels);
             
-            // Register each replica as a separate server (gamename-1, gamename-2, etc.)
-            int replicaIndex = 1;
-            for (com.github.dockerjava.api.model.Task task : tasks) {
-                String serverName = serviceName + "-" + replicaIndex;
-                currentServers.add(serverName);
-                totalFound++;
-                
-                if (!server.getServer(serverName).isPresent()) {
-                    // Use full service name for internal Docker network DNS resolution
-                    // No host ports exposed - all communication is internal
-                    String address = fullServiceName; // Full service name resolves in Docker overlay network
-                    int port = 25565; // Internal port (not exposed on host)
-                    
-                    ServerInfo serverInfo = new ServerInfo(serverName, new java.net.InetSocketAddress(address, port));
-                    server.registerServer(serverInfo);
-                    registeredServers.add(serverName);
-                    newlyRegistered++;
-                    logger.info("Registered healthy server: {} at {}:{} (internal network, replica {}/{}, service: {})", 
-                        serverName, address, port, replicaIndex, tasks.size(), fullServiceName);
-                } else {
-                    logger.debug("Server {} already registered", serverName);
+            // Tasks still running but about to be stopped (scale-in, rolling update) are drained,
+            // not numbered; the reconciler matches them to their registered server by task ID
+            List<DockerApi.SwarmTask> shuttingDownTasks = new ArrayList<>();
+            tasks.removeIf(task -> {
+                if (task.desiredState() != null && !"running".equals(task.desiredState())) {
+                    shuttingDownTasks.add(task);
+                    return true;
                 }
+                return false;
+            });
+            for (DockerApi.SwarmTask task : shuttingDownTasks) {
+                discovered.add(new DiscoveredBackend(task.id(), serviceName + "-" + task.slot(), serviceName,
+                    task.slot(), resolveTaskAddress(fullServiceName, task), GAME_PORT, projectId, capacity, labels,
+                    true, true));
+            }
+            
+            // Each replica is a separate server (gamename-1, gamename-2, etc.), numbered by its task slot
+            // so the remaining replicas keep their names when one of them dies
+            tasks.sort(Comparator.comparingInt(DockerApi.SwarmTask::slot)
+                .thenComparing(task -> String.valueOf(task.nodeId()))
+                .thenComparing(DockerApi.SwarmTask::id));
+            int[] replicas = assignReplicaNumbers(tasks.stream().mapToInt(DockerApi.SwarmTask::slot).toArray());
+            
+            for (int i = 0; i < tasks.size(); i++) {
+                DockerApi.SwarmTask task = tasks.get(i);
+                // Use the task's own address on the overlay network rather than the service VIP
+                // No host ports exposed - all communication is internal
+                String address = resolveTaskAddress(fullServiceName, task);
+                int port = GAME_PORT;
                 
-                replicaIndex++;
+                discovered.add(new DiscoveredBackend(task.id(), serviceName + "-" + replicas[i], serviceName,
+                    replicas[i], address, port, projectId, capacity, labels, isTaskHealthy(task), false));
+                totalFound++;
             }
         }
         
-        if (newlyRegistered > 0) {
-            logger.info("Swarm discovery: Registered {} new server(s) from {} service(s)", newlyRegistered, services.size());
-        }
-        
         return totalFound;
     }
     
-    private int discoverFromContainers(Set<String> currentServers) {
-        // List all running containers
-        List<Container> containers = dockerClient.listContainersCmd()
-            .withStatusFilter(Collections.singleton("running"))
-            .exec();
+    /**
+     * Lists every task whose desired state is running in a single API call and groups
+     * them by service ID, instead of one {@code /tasks} round-trip per service.
+     */
+    private Map<String, List<DockerApi.SwarmTask>> listTasksByService(DockerEndpoint endpoint) throws IOException {
+        List<DockerApi.SwarmTask> allTasks = new ArrayList<>(endpoint.api().listTasks("running"));
+        logger.debug("Found {} task(s) with desired state running", allTasks.size());
         
-        logger.debug("Found {} running container(s)", containers.size());
+        // Swarm keeps several old tasks per slot with desired state shutdown, so listing that state
+        // would fetch the whole task history every cycle. Only registered servers whose task left
+        // the running list are looked up, to drain the ones that are still running
+        Set<String> missing = registeredTaskIds(endpoint);
+        for (DockerApi.SwarmTask task : allTasks) {
+            missing.remove(task.id());
+        }
+        if (!missing.isEmpty()) {
+            List<DockerApi.SwarmTask> stopping = endpoint.api().listTasksById(missing);
+            logger.debug("Looked up {} registered task(s) no longer desired running, {} still known", 
+                missing.size(), stopping.size());
+            allTasks.addAll(stopping);
+        }
         
-        // Filter to only healthy containers
-        containers = containers.stream()
-            .filter(container -> {
-                // Check container health status
-                String health = container.getStatus();
-                if (health != null) {
-                    // Status format: "Up X seconds (healthy)" or "Up X seconds (unhealthy)" or "Up X seconds"
-                    // If explicitly unhealthy, skip it
-                    if (health.contains("(unhealthy)")) {
-                        logger.debug("Container {} is unhealthy: {}", 
-                            container.getNames() != null && container.getNames().length > 0 ? container.getNames()[0] : container.getId(), 
-                            health);
-                        return false;
-                    }
-                    // If healthcheck exists and shows starting, wait for it to become healthy
-                    // Format: "Up X seconds (health: starting)" -> wait
-                    if (health.contains("(health: starting)")) {
-                        logger.debug("Container {} health check still starting: {}", 
-                            container.getNames() != null && container.getNames().length > 0 ? container.getNames()[0] : container.getId(), 
-                            health);
-                        return false;
-                    }
-                    // If healthcheck exists and shows unhealthy, skip it
-                    if (health.contains("(health: unhealthy)")) {
-                        logger.debug("Container {} health check unhealthy: {}", 
-                            container.getNames() != null && container.getNames().length > 0 ? container.getNames()[0] : container.getId(), 
-                            health);
-                        return false;
-                    }
-                    // Containers without healthcheck or with "healthy" status are allowed
-                    // Status like "Up X seconds" (no health info) means no healthcheck configured - allow it
-                }
-                return true;
-            })
-            .collect(java.util.stream.Collectors.toList());
+        Map<String, List<DockerApi.SwarmTask>> tasksByService = new HashMap<>();
+        for (DockerApi.SwarmTask task : allTasks) {
+            if (task.serviceId() != null) {
+                tasksByService.computeIfAbsent(task.serviceId(), k -> new ArrayList<>()).add(task);
+            }
+        }
+        return tasksByService;
+    }
+    
+    private int discoverFromContainers(DockerEndpoint endpoint, List<DiscoveredBackend> discovered) throws IOException {
+        // List running game server containers; the daemon filters by label and status
+        List<DockerApi.ComposeContainer> containers = endpoint.api().listContainers(PROJECT_LABEL, "running");
         
-        logger.debug("Found {} healthy running container(s) (filtered from {} total)", 
-            containers.size(), dockerClient.listContainersCmd().withStatusFilter(Collections.singleton("running")).exec().size());
+        int runningCount = containers.size();
+        logger.debug("Found {} running game server container(s)", runningCount);
         
         // Group containers by base service name
-        Map<String, List<Container>> serviceContainers = new HashMap<>();
+        Map<String, List<DockerApi.ComposeContainer>> serviceContainers = new HashMap<>();
         int gameServerContainers = 0;
+        endpoint.containerNameParser().beginCycle();
         
-        for (Container container : containers) {
-            // Get labels from container
-            Map<String, String> labels = container.getLabels();
-            if (labels == null) {
-                logger.debug("Container {} has no labels, skipping", 
-                    container.getNames() != null && container.getNames().length > 0 ? container.getNames()[0] : "unknown");
-                continue;
-            }
-            
-            String projectId = labels.get("com.plexverse.project.id");
+        for (DockerApi.ComposeContainer container : containers) {
+            String projectId = container.labels().get(PROJECT_LABEL);
             if (projectId == null) continue; // Not a game server
             
-            // Get container names
-            String[] names = container.getNames();
-            if (names == null || names.length == 0) continue;
-            
-            // Container name format: /local-docker_micro-battles_1 or /local-docker-micro-battles-1
+            // Container name format: local-docker_micro-battles_1 or local-docker-micro-battles-1
             // Extract base service name
-            String containerName = names[0].startsWith("/") ? names[0].substring(1) : names[0];
+            String containerName = container.name();
+            if (containerName == null) continue;
             
             // Skip velocity container
             if (containerName.contains("velocity")) {
@@ -398,111 +883,220 @@ public class VelocityAutoRegister {
             logger.debug("Found game server container: {} (project ID: {})", containerName, projectId);
             gameServerContainers++;
             
-            // Extract base service name (remove scale suffix and stack prefix)
-            String baseServiceName = extractBaseServiceName(containerName);
+            // Extract base service name (remove scale suffix and stack prefix); cached per container
+            String baseServiceName = endpoint.containerNameParser().serviceName(container.id(), containerName);
             logger.debug("Extracted base service name: {} from container: {}", baseServiceName, containerName);
             
             serviceContainers.computeIfAbsent(baseServiceName, k -> new ArrayList<>()).add(container);
         }
         
+        // Forget names of containers that are gone
+        endpoint.containerNameParser().evictUnseen();
         logger.debug("Found {} game server container(s) across {} service(s)", 
             gameServerContainers, serviceContainers.size());
         
         int totalFound = 0;
-        int newlyRegistered = 0;
         
-        // Register each container as a server
-        for (Map.Entry<String, List<Container>> entry : serviceContainers.entrySet()) {
+        // Each container is a separate server
+        for (Map.Entry<String, List<DockerApi.ComposeContainer>> entry : serviceContainers.entrySet()) {
             String baseServiceName = entry.getKey();
-            List<Container> serviceContainersList = entry.getValue();
+            List<DockerApi.ComposeContainer> serviceContainersList = entry.getValue();
             
             logger.debug("Processing service: {} with {} container(s)", baseServiceName, serviceContainersList.size());
             
-            // Sort containers by name to ensure consistent numbering
-            serviceContainersList.sort(Comparator.comparing(c -> {
-                String[] names = c.getNames();
-                return names != null && names.length > 0 ? names[0] : "";
-            }));
+            // Number replicas by compose's container number so the remaining ones keep their names
+            // when one of them dies; sort by name so any fallback numbering is consistent
+            serviceContainersList.sort(Comparator.comparing(DockerApi.ComposeContainer::name));
+            int[] replicas = assignReplicaNumbers(serviceContainersList.stream()
+                .mapToInt(container -> parseContainerNumber(container.labels()))
+                .toArray());
             
-            int replicaIndex = 1;
-            for (Container container : serviceContainersList) {
-                String serverName = baseServiceName + "-" + replicaIndex;
-                currentServers.add(serverName);
-                totalFound++;
-                
-                if (!server.getServer(serverName).isPresent()) {
-                    // Use container name for address (Docker network DNS)
-                    String[] names = container.getNames();
-                    String containerName = names != null && names.length > 0 
-                        ? (names[0].startsWith("/") ? names[0].substring(1) : names[0])
-                        : baseServiceName;
-                    
-                    // In docker-compose, use the service name (base name) for DNS resolution
-                    // No host ports exposed - all communication is internal
-                    String address = baseServiceName; // Service name resolves in Docker bridge network
-                    int port = 25565; // Internal port (not exposed on host)
-                    
-                    ServerInfo serverInfo = new ServerInfo(serverName, new java.net.InetSocketAddress(address, port));
-                    server.registerServer(serverInfo);
-                    registeredServers.add(serverName);
-                    newlyRegistered++;
-                    logger.info("Registered healthy server: {} at {}:{} (internal network, container: {}, replica {}/{})", 
-                        serverName, address, port, containerName, replicaIndex, serviceContainersList.size());
+            for (int i = 0; i < serviceContainersList.size(); i++) {
+                DockerApi.ComposeContainer container = serviceContainersList.get(i);
+                String address;
+                int port;
+                if (!endpoint.advertisedHost().isEmpty()) {
+                    // A daemon on another host: reach the container through the port it publishes there
+                    Integer published = container.publishedPorts().get(GAME_PORT);
+                    if (published == null) {
+                        warnAddressesOnce(endpoint, "Game server containers on {} must publish port " + GAME_PORT
+                            + " to be reached at the endpoint's advertisedHost; containers that do not are skipped");
+                        logger.debug("Container {} does not publish port {}, skipping it", container.name(), GAME_PORT);
+                        continue;
+                    }
+                    address = endpoint.advertisedHost();
+                    port = published;
                 } else {
-                    logger.debug("Server {} already registered", serverName);
+                    // Use the container's own address rather than the service name, which resolves to every replica
+                    address = resolveContainerAddress(baseServiceName, container);
+                    port = GAME_PORT;
                 }
                 
-                replicaIndex++;
+                discovered.add(new DiscoveredBackend(container.id(), baseServiceName + "-" + replicas[i], baseServiceName,
+                    replicas[i], address, port, container.labels().get(PROJECT_LABEL), parseCapacity(container.labels()),
+                    container.labels(), isContainerHealthy(container), isDrainLabelled(container.labels())));
+                totalFound++;
             }
         }
         
-        if (newlyRegistered > 0) {
-            logger.info("Container discovery: Registered {} new server(s) from {} container(s)", 
-                newlyRegistered, gameServerContainers);
+        return totalFound;
+    }
+    
+    /**
+     * Turns the replica numbers Docker reports (0 when unknown) into unique server numbers.
+     * Known numbers are kept as they are; the rest, and any duplicates, get the lowest free
+     * numbers in list order.
+     */
+    static int[] assignReplicaNumbers(int[] reported) {
+        int[] assigned = new int[reported.length];
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i < reported.length; i++) {
+            if (reported[i] > 0 && used.add(reported[i])) {
+                assigned[i] = reported[i];
+            }
         }
+        int next = 1;
+        for (int i = 0; i < assigned.length; i++) {
+            if (assigned[i] == 0) {
+                while (used.contains(next)) {
+                    next++;
+                }
+                assigned[i] = next;
+                used.add(next);
+            }
+        }
+        return assigned;
+    }
+    
+    private static int parseContainerNumber(Map<String, String> labels) {
+        String value = labels.get(COMPOSE_CONTAINER_NUMBER_LABEL);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * Address a Swarm replica is registered with. The service name would resolve to the Swarm
+     * VIP, which IPVS balances across all replicas, so every replica would be the same endpoint.
+     */
+    private String resolveTaskAddress(String fullServiceName, DockerApi.SwarmTask task) {
+        // Swarm's embedded DNS names each task <service>.<slot>.<task-id> (<service>.<node-id>.<task-id> for global services)
+        String taskHostname = fullServiceName + "." + (task.slot() > 0 ? String.valueOf(task.slot()) : task.nodeId()) + "." + task.id();
         
-        return totalFound;
+        switch (config.getDiscovery().getAddressMode()) {
+            case SERVICE:
+                return fullServiceName;
+            case DNS:
+                return taskHostname;
+            default:
+                String ip = selectNetworkAddress(task.networkAddresses());
+                if (ip == null) {
+                    logger.debug("Task {} has no address on a usable network, falling back to {}", task.id(), taskHostname);
+                    return taskHostname;
+                }
+                return ip;
+        }
     }
     
-    private String extractBaseServiceName(String containerName) {
-        // Handle docker-compose naming: local-docker_micro-battles_1 or local-docker-micro-battles-1
-        // Remove stack prefix if present
-        String name = containerName;
-        if (name.contains("_")) {
-            // Format: stack_service_replica
-            String[] parts = name.split("_");
-            if (parts.length >= 2) {
-                // Check if last part is a number (replica number)
-                try {
-                    Integer.parseInt(parts[parts.length - 1]);
-                    // Last part is replica number, service name is everything before it
-                    name = String.join("_", Arrays.copyOf(parts, parts.length - 1));
-                } catch (NumberFormatException e) {
-                    // Not a replica number, use as-is
+    /**
+     * Address a compose replica is registered with. The compose service name resolves to all
+     * replicas of the service, while the container name and IP are unique to one container.
+     */
+    private String resolveContainerAddress(String baseServiceName, DockerApi.ComposeContainer container) {
+        switch (config.getDiscovery().getAddressMode()) {
+            case SERVICE:
+                return baseServiceName;
+            case DNS:
+                return container.name();
+            default:
+                String ip = selectNetworkAddress(container.networkAddresses());
+                if (ip == null) {
+                    logger.debug("Container {} has no address on a usable network, falling back to its name", container.name());
+                    return container.name();
+                }
+                return ip;
+        }
+    }
+    
+    /**
+     * Picks the IP on the configured network. Without one, the IP is only used when the replica
+     * has a single network besides the Swarm routing mesh: Docker lists networks alphabetically,
+     * so picking one of several could pick a network the proxy is not on.
+     */
+    private String selectNetworkAddress(Map<String, String> networkAddresses) {
+        String network = config.getDiscovery().getNetwork();
+        if (!network.isEmpty()) {
+            return networkAddresses.get(network);
+        }
+        String candidate = null;
+        for (Map.Entry<String, String> entry : networkAddresses.entrySet()) {
+            if ("ingress".equals(entry.getKey())) {
+                continue;
+            }
+            if (candidate != null) {
+                if (!ambiguousNetworkWarned) {
+                    ambiguousNetworkWarned = true;
+                    logger.warn("Backends are attached to several networks ({}); set discovery.network to the one Velocity "
+                        + "shares with them. Registering their DNS names until then", networkAddresses.keySet());
                 }
+                return null;
             }
-            // Remove stack prefix (first part before _)
-            if (name.contains("_")) {
-                name = name.substring(name.indexOf("_") + 1);
-            }
-        } else if (name.contains("-")) {
-            // Format: stack-service-replica
-            // Try to extract base name (remove last number if it's a replica)
-            java.util.regex.Matcher matcher = COMPOSE_SCALE_PATTERN.matcher(name);
-            if (matcher.matches()) {
-                name = matcher.group(1);
-            }
-            // Remove stack prefix if present (first part before first -)
-            if (name.contains("-") && name.split("-").length > 1) {
-                // Check if it looks like stack-service format
-                String[] parts = name.split("-");
-                // If first part looks like a stack name (e.g., "local", "docker"), remove it
-                if (parts.length > 1 && (parts[0].equals("local") || parts[0].equals("docker"))) {
-                    name = String.join("-", Arrays.copyOfRange(parts, 1, parts.length));
+            candidate = entry.getValue();
+        }
+        return candidate;
+    }
+    
+    /**
+     * Whether a container's Docker health check currently passes. The status reads like
+     * {@code "Up 5 minutes (healthy)"}; containers without a health check have no suffix and pass.
+     */
+    private static boolean isContainerHealthy(DockerApi.ComposeContainer container) {
+        String status = container.status();
+        return status == null || !(status.contains("(unhealthy)") || status.contains("(health: starting)")
+            || status.contains("(health: unhealthy)"));
+    }
+    
+    /**
+     * Whether a running Swarm task reports no error; Swarm puts failed health checks in the task error.
+     */
+    private static boolean isTaskHealthy(DockerApi.SwarmTask task) {
+        return task.err() == null || task.err().isEmpty();
+    }
+    
+    /**
+     * Whether a container carries the drain label with any value other than {@code false}.
+     */
+    private boolean isDrainLabelled(Map<String, String> labels) {
+        String label = config.getDiscovery().getDrainLabel();
+        if (label.isEmpty()) {
+            return false;
+        }
+        String value = labels.get(label);
+        return value != null && !value.trim().equalsIgnoreCase("false");
+    }
+    
+    /**
+     * Reads the capacity label used by the weighted balancer, falling back to the configured default.
+     */
+    private int parseCapacity(Map<String, String> labels) {
+        PluginConfig.Routing routing = config.getRouting();
+        String value = routing.getCapacityLabel() != null ? labels.get(routing.getCapacityLabel()) : null;
+        if (value != null) {
+            try {
+                int capacity = Integer.parseInt(value.trim());
+                if (capacity > 0) {
+                    return capacity;
                 }
+            } catch (NumberFormatException e) {
+                // Fall through to the default
             }
+            logger.debug("Ignoring invalid capacity label value: {}", value);
         }
-        
-        return name;
+        return routing.getDefaultCapacity();
     }
 }
@@ -0,0 +1,47 @@
+package net.plexverse.velocityautoregister.api;
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+
+/**
+ * A backend registered by auto-registration. The identity fields never change for a given
+ * instance; a replaced task or container, or a new address, shows up as a new instance.
+ * {@link #isRoutable()}, {@link #isDraining()} and {@link #players()} are live and read the
+ * backend's current state.
+ */
+public interface DiscoveredServer {
+
+    /** Velocity server name, e.g. {@code micro-battles-2}. */
+    String name();
+
+    /** Value of the {@code com.plexverse.project.id} label. */
+    String projectId();
+
+    /** Service the replica belongs to, e.g. {@code micro-battles}. */
+    String serviceName();
+
+    /** 1-based replica number within the service; stable across restarts of other replicas. */
+    int replica();
+
+    /** Relative capacity from the capacity label. */
+    int capacity();
+
+    InetSocketAddress address();
+
+    /** Container labels of the backend. The map is unmodifiable. */
+    Map<String, String> labels();
+
+    /** The handle Velocity returned when the server was registered. */
+    RegisteredServer server();
+
+    /** Whether new players should be sent here: passing its health checks and not draining. */
+    boolean isRoutable();
+
+    /** Whether the backend is shutting down; it keeps its players but takes no new ones. */
+    boolean isDraining();
+
+    /** Players currently connected, including ones still on their way there. */
+    int players();
+}
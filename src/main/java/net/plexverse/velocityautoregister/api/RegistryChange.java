@@ -0,0 +1,30 @@
+package net.plexverse.velocityautoregister.api;
+
+import java.util.List;
+
+/**
+ * What one discovery cycle changed. The lists are unmodifiable.
+ *
+ * @param version the {@link ServerDirectory#version()} this change produced
+ * @param added   servers registered under a new name
+ * @param updated servers whose backend, address or metadata changed, or that started or
+ *                stopped draining, as they are now
+ * @param removed servers that were unregistered, as they were last seen
+ */
+public record RegistryChange(
+    long version,
+    List<DiscoveredServer> added,
+    List<DiscoveredServer> updated,
+    List<DiscoveredServer> removed
+) {
+
+    public RegistryChange {
+        added = List.copyOf(added);
+        updated = List.copyOf(updated);
+        removed = List.copyOf(removed);
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+    }
+}
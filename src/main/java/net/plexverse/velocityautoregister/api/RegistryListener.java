@@ -0,0 +1,12 @@
+package net.plexverse.velocityautoregister.api;
+
+/**
+ * Receives registry changes. Called on the discovery thread after the change is visible
+ * through {@link ServerDirectory}, so implementations must return quickly and hand anything
+ * slow off to their own executor.
+ */
+@FunctionalInterface
+public interface RegistryListener {
+
+    void onChange(RegistryChange change);
+}
@@ -0,0 +1,47 @@
+package net.plexverse.velocityautoregister.api;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read-only, indexed view of the auto-registered servers for other proxy plugins.
+ *
+ * <p>Get it from the plugin instance:
+ * <pre>{@code
+ * ServerDirectory directory = proxy.getPluginManager().getPlugin("velocity-auto-register")
+ *     .flatMap(PluginContainer::getInstance)
+ *     .map(plugin -> ((VelocityAutoRegister) plugin).getServerDirectory())
+ *     .orElseThrow();
+ * }</pre>
+ *
+ * <p>Every call reads the registry as published by the last discovery cycle. Lookups are
+ * hash lookups against indexes built once per change, and results are unmodifiable lists
+ * sorted by server name that are safe to keep. Methods may be called from any thread.
+ */
+public interface ServerDirectory {
+
+    /**
+     * Increases by one every time discovery publishes a change to the registry, and stays the
+     * same across cycles that found nothing new. Each increase is reported to listeners as one
+     * {@link RegistryChange}.
+     */
+    long version();
+
+    Optional<DiscoveredServer> server(String name);
+
+    List<DiscoveredServer> all();
+
+    List<DiscoveredServer> byProject(String projectId);
+
+    List<DiscoveredServer> byService(String serviceName);
+
+    /** Servers whose container carries label {@code key} with exactly {@code value}. */
+    List<DiscoveredServer> byLabel(String key, String value);
+
+    /** Servers of a project that should currently receive new players. */
+    List<DiscoveredServer> routableByProject(String projectId);
+
+    void addListener(RegistryListener listener);
+
+    void removeListener(RegistryListener listener);
+}
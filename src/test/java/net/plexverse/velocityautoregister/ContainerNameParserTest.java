@@ -0,0 +1,107 @@
+package net.plexverse.velocityautoregister;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ContainerNameParserTest {
+
+    private static final List<String> DEFAULT_PREFIXES = new PluginConfig.Discovery().getStackPrefixes();
+
+    /** Names with the edge cases of the previous parsing: sign, overflow, trailing separators. */
+    private static final String[] NAMES = {
+        "local-docker_micro-battles_1", "local-docker_micro-battles_12", "plexverse_lobby_3", "plexverse_lobby",
+        "plexverse_bed_wars_2", "lobby_1", "plexverse_lobby_007", "plexverse_lobby_99999999999",
+        "plexverse_lobby_-1", "plexverse_lobby_1_", "plexverse__1",
+        "local-docker-micro-battles-1", "docker-micro-battles-1", "local-lobby-1", "local-lobby-",
+        "local--lobby", "local-", "plexverse-lobby-1", "lobby-1", "lobby", "local", "micro-battles",
+    };
+
+    private static final Pattern COMPOSE_SCALE_PATTERN = Pattern.compile("^(.+)_(\\d+)$");
+
+    @Test
+    void defaultsParseLikeThePreviousParser() {
+        ContainerNameParser parser = new ContainerNameParser(DEFAULT_PREFIXES, false);
+        for (String name : NAMES) {
+            assertEquals(previousServiceName(name), parser.parse(name), name);
+        }
+    }
+
+    @Test
+    void defaultsParseRandomNamesLikeThePreviousParser() {
+        String[] tokens = {"local", "docker", "lobby", "a", "1", "12", "0", "007", "2147483647", "2147483648",
+            "-2147483648", "99999999999", "_", "-", "--", "__"};
+        ContainerNameParser parser = new ContainerNameParser(DEFAULT_PREFIXES, false);
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int n = random.nextInt(6); n > 0; n--) {
+                name.append(tokens[random.nextInt(tokens.length)]);
+            }
+            assertEquals(previousServiceName(name.toString()), parser.parse(name.toString()), name.toString());
+        }
+    }
+
+    @Test
+    void strippingTheReplicaSuffixOnlyRenamesComposeV2Names() {
+        ContainerNameParser parser = new ContainerNameParser(List.of("local-docker", "local", "docker"), true);
+        assertEquals("micro-battles", parser.parse("local-docker-micro-battles-1"));
+        assertEquals("micro-battles", parser.parse("docker-micro-battles-12"));
+        assertEquals("lobby", parser.parse("local-lobby-1"));
+        assertEquals("plexverse-lobby", parser.parse("plexverse-lobby-1"));
+        assertEquals("lobby", parser.parse("lobby-1"));
+        assertEquals("lobby", parser.parse("local-lobby-"));
+        for (String name : NAMES) {
+            if (name.indexOf('_') >= 0) {
+                assertEquals(previousServiceName(name), parser.parse(name), name);
+            }
+        }
+    }
+
+    @Test
+    void cachesByContainerIdUntilTheNameChanges() {
+        ContainerNameParser parser = new ContainerNameParser(DEFAULT_PREFIXES, false);
+        parser.beginCycle();
+        String first = parser.serviceName("c1", "plexverse_lobby_1");
+        assertSame(first, parser.serviceName("c1", "plexverse_lobby_1"));
+        assertEquals("bed_wars", parser.serviceName("c1", "plexverse_bed_wars_1"));
+    }
+
+    /** The service name parsing that {@link ContainerNameParser} replaced, kept as it was. */
+    private static String previousServiceName(String containerName) {
+        String name = containerName;
+        if (name.contains("_")) {
+            String[] parts = name.split("_");
+            if (parts.length >= 2) {
+                try {
+                    Integer.parseInt(parts[parts.length - 1]);
+                    name = String.join("_", Arrays.copyOf(parts, parts.length - 1));
+                } catch (NumberFormatException e) {
+                    // Not a replica number, use as-is
+                }
+            }
+            if (name.contains("_")) {
+                name = name.substring(name.indexOf("_") + 1);
+            }
+        } else if (name.contains("-")) {
+            Matcher matcher = COMPOSE_SCALE_PATTERN.matcher(name);
+            if (matcher.matches()) {
+                name = matcher.group(1);
+            }
+            if (name.contains("-") && name.split("-").length > 1) {
+                String[] parts = name.split("-");
+                if (parts.length > 1 && (parts[0].equals("local") || parts[0].equals("docker"))) {
+                    name = String.join("-", Arrays.copyOfRange(parts, 1, parts.length));
+                }
+            }
+        }
+        return name;
+    }
+}